@@ -0,0 +1,108 @@
+package com.teamtreehouse.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/*A small timing harness: runs an operation through warmup iterations, then measures it, and reports the average
+time per operation together with how many bytes the measuring thread allocated. The allocation numbers come from
+the JVM's per-thread allocation counter, which is the same source as JMH's gc.alloc.rate profiler*/
+public class Benchmark {
+
+    /*The operation being measured. Whatever it returns is kept so the JIT can't remove the work*/
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    /*Called before every iteration and not measured, for operations that need fresh input each time*/
+    public interface Setup {
+        void run() throws Exception;
+    }
+
+    public static class Result {
+        public final String name;
+        public final String parameters;
+        public final int iterations;
+        public final double averageMillis;
+        public final double minMillis;
+        public final double bytesPerOperation;
+        public final double allocationRate;
+
+        Result(String name, String parameters, int iterations, double averageMillis, double minMillis,
+               double bytesPerOperation, double allocationRate) {
+            this.name = name;
+            this.parameters = parameters;
+            this.iterations = iterations;
+            this.averageMillis = averageMillis;
+            this.minMillis = minMillis;
+            this.bytesPerOperation = bytesPerOperation;
+            this.allocationRate = allocationRate;
+        }
+
+        /*Comma separated, for comparing one release's numbers to the last*/
+        public String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%.4f,%.4f,%.0f,%.1f", name, parameters, iterations,
+                    averageMillis, minMillis, bytesPerOperation, allocationRate);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-28s %-26s %12.3f ms/op %12.3f min %14.0f B/op %10.1f MB/s",
+                    name, parameters, averageMillis, minMillis, bytesPerOperation, allocationRate);
+        }
+    }
+
+    public static final String CSV_HEADER = "benchmark,parameters,iterations,avg_ms,min_ms,alloc_bytes_per_op,"
+            + "gc_alloc_rate_mb_per_s";
+
+    private static Object sink;
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+
+    public Benchmark(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    public Result run(String name, String parameters, Operation operation) throws Exception {
+        return run(name, parameters, null, operation);
+    }
+
+    public Result run(String name, String parameters, Setup setup, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            sink = operation.run();
+        }
+        long totalNanos = 0;
+        long minNanos = Long.MAX_VALUE;
+        long totalBytes = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink = operation.run();
+            long elapsed = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+            totalNanos += elapsed;
+            minNanos = Math.min(minNanos, elapsed);
+        }
+        double averageMillis = totalNanos / 1e6 / measuredIterations;
+        double bytesPerOperation = (double) totalBytes / measuredIterations;
+        double allocationRate = totalNanos == 0 ? 0 : totalBytes / (1024.0 * 1024.0) / (totalNanos / 1e9);
+        return new Result(name, parameters, measuredIterations, averageMillis, minNanos / 1e6, bytesPerOperation,
+                allocationRate);
+    }
+
+    /*Bytes allocated so far by the current thread, or 0 when the JVM doesn't track it*/
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
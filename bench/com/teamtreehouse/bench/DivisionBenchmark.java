@@ -0,0 +1,95 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/*Optimizes a league split into many divisions, one Players.optimizeTeams call after another and then with
+DivisionOptimizer on pools of more and more threads, to see how close to linear it scales:
+    --divisions 2000       number of divisions
+    --players 220          players per division, with enough teams of 11 for all of them
+    --threads 1,2,4,8      pool sizes to try
+    --rounds 5             measured rounds per pool size, after one warmup round
+Each line reports the best round and players per second. It also checks that every pool size gave the same rosters,
+and exits with status 1 if one didn't.*/
+public class DivisionBenchmark {
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int divisionCount = Integer.parseInt(options.getOrDefault("divisions", "2000"));
+        int size = Integer.parseInt(options.getOrDefault("players", "220"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        String[] threadCounts = options.getOrDefault("threads", "1,2,4,8").split(",");
+
+        List<DivisionOptimizer.Division> divisions = new ArrayList<>();
+        List<Player[]> players = new ArrayList<>();
+        List<Map<Team, Set<Player>>> teams = new ArrayList<>();
+        for (int d = 0; d < divisionCount; d++) {
+            Player[] divisionPlayers = LeagueFixtures.players(size, d);
+            Map<Team, Set<Player>> divisionTeams = new TreeMap<>();
+            for (Team team : LeagueFixtures.teams(LeagueFixtures.fullLeagueTeams(size)).keySet()) {
+                Team renamed = new Team("Division " + d + " " + team.getName(), team.getCoach());
+                divisionTeams.put(renamed, renamed.playerSet);
+            }
+            players.add(divisionPlayers);
+            teams.add(divisionTeams);
+            divisions.add(new DivisionOptimizer.Division("Division " + d, divisionPlayers, divisionTeams.keySet()));
+        }
+        long total = (long) divisionCount * size;
+        System.out.printf("%,d divisions of %,d players, %d processors%n", divisionCount, size,
+                Runtime.getRuntime().availableProcessors());
+
+        double sequential = best(rounds, () -> {
+            for (int d = 0; d < divisionCount; d++) {
+                Players.optimizeTeams(players.get(d), teams.get(d));
+            }
+        });
+        System.out.printf("%-24s %10.1f ms %,14.0f players/s%n", "optimizeTeams in a loop", sequential,
+                total / (sequential / 1000));
+
+        String first = null;
+        for (String threadCount : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(threadCount));
+            List<List<DivisionOptimizer.Assignment>> last = new ArrayList<>(1);
+            double millis = best(rounds, () -> {
+                last.clear();
+                last.add(DivisionOptimizer.optimize(divisions, pool));
+            });
+            pool.shutdown();
+            System.out.printf("%-24s %10.1f ms %,14.0f players/s %6.2fx%n", "DivisionOptimizer x" + threadCount,
+                    millis, total / (millis / 1000), sequential / millis);
+            String rosters = fingerprint(last.get(0));
+            if (first == null) {
+                first = rosters;
+            } else if (!first.equals(rosters)) {
+                System.out.println("Rosters with " + threadCount + " threads differ from the first pool's.");
+                System.exit(1);
+            }
+        }
+    }
+
+    private static double best(int rounds, Runnable run) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= rounds; round++) {
+            long start = System.nanoTime();
+            run.run();
+            double millis = (System.nanoTime() - start) / 1e6;
+            if (round > 0) {
+                best = Math.min(best, millis);
+            }
+        }
+        return best;
+    }
+
+    private static String fingerprint(List<DivisionOptimizer.Assignment> assignments) {
+        int hash = 1;
+        for (DivisionOptimizer.Assignment assignment : assignments) {
+            hash = 31 * hash + assignment.rosters().hashCode();
+        }
+        return Integer.toHexString(hash);
+    }
+}
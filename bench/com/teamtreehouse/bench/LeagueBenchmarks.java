@@ -0,0 +1,262 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/*Benchmarks for the optimizers (greedy, greedy on a kept ScoreIndex, with swap refinement and balanced), the fairness
+report math (from the player list and off a ScoreIndex), the team stats, the league height histogram, listing every
+player the way the menus do (a printf per line and through a Listing), saving/loading the league (as one snapshot,
+and in segments: all of them, then after one change) and the size/speed trade-off of each segment codec, on a drafted
+league, loading on the common pool and on one thread. Every benchmark runs for each league size and team count given
+on the command line:
+    --players 33,10000,1000000   league sizes (default)
+    --teams auto,3               team counts, "auto" being enough teams of 11 for every player (default)
+    --only optimize,snapshot     run only the benchmarks whose names start with these
+    --warmup 3 --iterations 5    iterations per benchmark
+    --csv results.csv            also write the results as CSV, to compare releases
+Each line reports time per operation, bytes allocated per operation and the allocation rate.*/
+public class LeagueBenchmarks {
+    private static final List<Benchmark.Result> results = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        int[] sizes = ints(options.getOrDefault("players", "33,10000,1000000"));
+        String[] teamCounts = options.getOrDefault("teams", "auto").split(",");
+        String[] only = options.containsKey("only") ? options.get("only").split(",") : new String[0];
+        Benchmark benchmark = new Benchmark(Integer.parseInt(options.getOrDefault("warmup", "3")),
+                Integer.parseInt(options.getOrDefault("iterations", "5")));
+
+        for (int size : sizes) {
+            Set<Integer> teams = new LinkedHashSet<>();
+            for (String teamCount : teamCounts) {
+                teams.add(teamCount.equals("auto") ? LeagueFixtures.fullLeagueTeams(size)
+                        : Integer.parseInt(teamCount));
+            }
+            for (int teamCount : teams) {
+                run(benchmark, only, size, teamCount);
+            }
+        }
+        if (options.containsKey("csv")) {
+            try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("csv"))))) {
+                csv.println(Benchmark.CSV_HEADER);
+                for (Benchmark.Result result : results) {
+                    csv.println(result.toCsv());
+                }
+            }
+        }
+    }
+
+    private static void run(Benchmark benchmark, String[] only, int size, int teamCount) throws Exception {
+        String parameters = "players=" + size + " teams=" + teamCount;
+        Player[] players = LeagueFixtures.players(size);
+        Map<Team, Set<Player>> teams = LeagueFixtures.teams(teamCount);
+
+        if (selected(only, "optimizeTeams")) {
+            report(benchmark.run("optimizeTeams", parameters, () -> {
+                Players.optimizeTeams(players, teams);
+                return teams;
+            }));
+        } else {
+            Players.optimizeTeams(players, teams);
+        }
+        ScoreIndex scores = new ScoreIndex(players);
+        if (selected(only, "optimizeTeamsIndexed")) {
+            report(benchmark.run("optimizeTeamsIndexed", parameters, () -> {
+                Players.optimizeTeams(scores, teams, null);
+                return teams;
+            }));
+        }
+        if (selected(only, "optimizeTeamsRefined")) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                SwapRefiner refiner = new SwapRefiner(50, parallel);
+                double[] narrowed = new double[1];
+                report(benchmark.run("optimizeTeamsRefined", parameters + " parallel=" + parallel, () -> {
+                    narrowed[0] = Players.optimizeTeams(players, teams, refiner);
+                    return teams;
+                }));
+                System.out.printf("%-28s %-26s %12.3f points%n", "refinementGain",
+                        parameters + " parallel=" + parallel, narrowed[0]);
+            }
+            Players.optimizeTeams(players, teams);
+        }
+        if (selected(only, "optimizeTeamsBalanced")) {
+            report(benchmark.run("optimizeTeamsBalanced", parameters,
+                    () -> BalancedOptimizer.optimize(players, teams, new BalanceOptions(11))));
+            System.out.printf("%-28s %-26s %s%n", "balancedSpread", parameters, spread(teams));
+            Players.optimizeTeams(players, teams);
+            System.out.printf("%-28s %-26s %s%n", "greedySpread", parameters, spread(teams));
+        }
+        if (selected(only, "highDiscrepancy")) {
+            report(benchmark.run("highDiscrepancy", parameters, () -> Players.highDiscrepancy(players)));
+            report(benchmark.run("highDiscrepancyIndexed", parameters,
+                    () -> Players.highDiscrepancy(scores, 11)));
+        }
+        if (selected(only, "teamStats")) {
+            Team[] teamArray = teams.keySet().toArray(new Team[0]);
+            report(benchmark.run("teamStats", parameters, () -> {
+                double sum = 0;
+                for (Team team : teamArray) {
+                    sum += team.averageHeight() + team.averageExperience() + team.totalExperience()
+                            + team.averageAbilityScore() + team.totalAbilityScore();
+                }
+                return sum;
+            }));
+        }
+        if (selected(only, "heightHistogram")) {
+            report(benchmark.run("heightHistogram", parameters,
+                    () -> Histogram.heights(teams.keySet(), ForkJoinPool.commonPool())));
+        }
+        if (selected(only, "listing")) {
+            PrintStream console = new PrintStream(OutputStream.nullOutputStream(), true);
+            report(benchmark.run("listingPrintf", parameters, () -> {
+                for (int i = 0; i < players.length; i++) {
+                    console.printf("%d. %s%n", i + 1, players[i].toStringStats());
+                }
+                return console;
+            }));
+            Listing listing = new Listing(console, 0, () -> true);
+            report(benchmark.run("listingChunked", parameters, () -> {
+                for (int i = 0; i < players.length; i++) {
+                    listing.addStats(i + 1, players[i]);
+                }
+                listing.end();
+                return listing;
+            }));
+        }
+        if (selected(only, "snapshot")) {
+            Path file = Files.createTempFile("league", ".snapshot");
+            try {
+                LeagueSnapshot snapshot = new LeagueSnapshot(players, teams, new ArrayDeque<>());
+                report(benchmark.run("snapshotWrite", parameters, () -> snapshot.write(file)));
+                System.out.printf("%-28s %-26s %12d bytes%n", "snapshotSize", parameters, Files.size(file));
+                report(benchmark.run("snapshotRead", parameters, () -> LeagueSnapshot.read(file)));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+            Path directory = Files.createTempDirectory("league");
+            Path manifest = directory.resolve(SegmentedSnapshot.FILE_NAME);
+            try {
+                LeagueSnapshot snapshot = new LeagueSnapshot(players, teams, new ArrayDeque<>());
+                report(benchmark.run("segmentedWriteFull", parameters, () -> {
+                    SegmentedSnapshot.delete(manifest);
+                    return SegmentedSnapshot.write(manifest, snapshot);
+                }));
+                Map<Player, Integer> positions = new HashMap<>();
+                for (int i = 0; i < players.length; i++) {
+                    positions.putIfAbsent(players[i], i);
+                }
+                Team team = teams.keySet().iterator().next();
+                Player player = players[players.length / 2];
+                report(benchmark.run("segmentedWriteOneChange", parameters, () -> {
+                    player.setDirty();
+                    team.playerSet.clear();
+                    return SegmentedSnapshot.write(manifest, snapshot, drafted -> positions.getOrDefault(drafted, -1));
+                }));
+                report(benchmark.run("segmentedRead", parameters, () -> SegmentedSnapshot.read(manifest)));
+            } finally {
+                SegmentedSnapshot.delete(manifest);
+                Files.deleteIfExists(directory);
+            }
+        }
+        if (selected(only, "codec")) {
+            Map<Team, Set<Player>> drafted = LeagueFixtures.teams(teamCount);
+            Players.optimizeTeams(players, drafted);
+            LeagueSnapshot snapshot = new LeagueSnapshot(players, drafted, new ArrayDeque<>());
+            Path directory = Files.createTempDirectory("league");
+            Path manifest = directory.resolve(SegmentedSnapshot.FILE_NAME);
+            ForkJoinPool oneThread = new ForkJoinPool(1);
+            try {
+                for (String name : new String[]{"none", "lz4", "deflate"}) {
+                    BlockCodec codec = BlockCodec.forName(name);
+                    report(benchmark.run("codecWrite:" + name, parameters, () -> {
+                        SegmentedSnapshot.delete(manifest);
+                        return SegmentedSnapshot.write(manifest, snapshot, codec);
+                    }));
+                    long bytes = 0;
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                        for (Path file : files) {
+                            bytes += Files.size(file);
+                        }
+                    }
+                    System.out.printf("%-28s %-26s %12d bytes%n", "codecSize:" + name, parameters, bytes);
+                    report(benchmark.run("codecRead:" + name, parameters, () -> SegmentedSnapshot.read(manifest)));
+                    report(benchmark.run("codecReadOneThread:" + name, parameters,
+                            () -> SegmentedSnapshot.read(manifest, oneThread)));
+                }
+            } finally {
+                oneThread.shutdown();
+                SegmentedSnapshot.delete(manifest);
+                Files.deleteIfExists(directory);
+            }
+        }
+    }
+
+    /*How far apart the teams ended up, to compare how well each optimizer balances and not just how fast it is*/
+    private static String spread(Map<Team, Set<Player>> teams) {
+        double lowHeight = Double.POSITIVE_INFINITY;
+        double highHeight = Double.NEGATIVE_INFINITY;
+        double lowExperience = Double.POSITIVE_INFINITY;
+        double highExperience = Double.NEGATIVE_INFINITY;
+        int smallest = Integer.MAX_VALUE;
+        int largest = 0;
+        for (Team team : teams.keySet()) {
+            int size = team.playerSet.size();
+            smallest = Math.min(smallest, size);
+            largest = Math.max(largest, size);
+            if (size != 0) {
+                lowHeight = Math.min(lowHeight, team.averageHeight());
+                highHeight = Math.max(highHeight, team.averageHeight());
+                lowExperience = Math.min(lowExperience, team.totalExperience());
+                highExperience = Math.max(highExperience, team.totalExperience());
+            }
+        }
+        return String.format("height %.2f-%.2f, experienced %.0f-%.0f, size %d-%d", lowHeight, highHeight,
+                lowExperience, highExperience, smallest, largest);
+    }
+
+    private static void report(Benchmark.Result result) {
+        results.add(result);
+        System.out.println(result);
+    }
+
+    private static boolean selected(String[] only, String name) {
+        if (only.length == 0) {
+            return true;
+        }
+        for (String prefix : only) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option instead of " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static int[] ints(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
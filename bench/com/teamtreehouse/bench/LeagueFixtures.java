@@ -0,0 +1,60 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.Player;
+import com.teamtreehouse.model.Roster;
+import com.teamtreehouse.model.Team;
+
+import java.util.*;
+
+/*Synthetic leagues for the benchmarks. Players are drawn from the same first names, last names and height range as
+the example list in Players.load(), with a fixed seed so every run measures the same league*/
+public class LeagueFixtures {
+    public static final long SEED = 33;
+
+    private static final String[] FIRST_NAMES = {"Joe", "Jill", "Bill", "Eva", "Matt", "Kimmy", "Sammy", "Karl",
+            "Suzane", "Sal", "Ben", "Diego", "Chloe", "Arfalseld", "Phillip", "Les", "Herschel", "Andrew", "Pasan",
+            "Kenny", "Alena", "Carling", "Joseph", "Gabe", "Jeremy", "James", "Nick", "Will", "Jason", "Johnny",
+            "Ryan"};
+    private static final String[] LAST_NAMES = {"Smith", "Tanner", "Bon", "Gordon", "Gill", "Stein", "Adams",
+            "Saygan", "Greenberg", "Dali", "Kavalier", "Finkelstein", "Soto", "Alaska", "Willis", "Helm", "Clay",
+            "Krustofski", "Chalklerz", "Membrane", "Lovins", "Sketchings", "Seacharpet", "Freely", "Listmaker",
+            "Droid", "Dothnette", "Grande", "Guyam", "Seaver", "Thunder", "Creedson"};
+
+    /*Heights between 35 and 47 inches and roughly half the players with experience, like the example list. Last
+    names get a number once the name pool runs out, so large leagues don't collapse into a few unique players*/
+    public static Player[] players(int count, long seed) {
+        Random random = new Random(seed);
+        Player[] players = new Player[count];
+        int pool = FIRST_NAMES.length * LAST_NAMES.length;
+        for (int i = 0; i < count; i++) {
+            String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            if (count > pool) {
+                lastName = lastName + random.nextInt(count / pool + 1);
+            }
+            players[i] = new Player(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], lastName,
+                    35 + random.nextInt(13), random.nextBoolean(), false);
+        }
+        return players;
+    }
+
+    public static Player[] players(int count) {
+        return players(count, SEED);
+    }
+
+    /*Empty teams, set up the way Menu.newTeam() sets them up*/
+    public static Map<Team, Set<Player>> teams(int count) {
+        Map<Team, Set<Player>> teams = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            Team team = new Team(String.format("Team %05d", i), "Coach " + i);
+            Roster roster = new Roster();
+            team.playerSet = roster;
+            teams.put(team, roster);
+        }
+        return teams;
+    }
+
+    /*Enough teams for every player at the league's roster size of 11*/
+    public static int fullLeagueTeams(int players) {
+        return (int) Math.ceil(players / 11.0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.*;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*Hammers one LeagueService from many threads at once, the way several organizers and coaches would, and checks that
+no player ever ends up on two teams. Most of the work is drafting random players onto random teams and taking them
+off again, mixed with roster views, searches and now and then a whole-league change (a new player replacing a free
+agent, or an optimize). A checker thread stops everyone every so often to look at the league with
+LeagueService.verify(), and once more at the end:
+    --threads 16        worker threads
+    --seconds 10        how long to run
+    --players 1000      league size; there are enough teams of 11 for everyone
+Exits with status 1 if anything was wrong.*/
+public class LeagueStressTest {
+    private static final long CHECK_MILLIS = 250;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "10"));
+        int size = Integer.parseInt(options.getOrDefault("players", "1000"));
+
+        Player[] players = LeagueFixtures.players(size);
+        Set<Player> unique = new TreeSet<>(Arrays.asList(players));
+        players = unique.toArray(new Player[unique.size()]);
+        LeagueService league = new LeagueService(players,
+                LeagueFixtures.teams(LeagueFixtures.fullLeagueTeams(players.length)), new ArrayDeque<>());
+        Team[] teams = league.teams().toArray(new Team[0]);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        EnumMap<LeagueService.Draft, LongAdder> drafts = new EnumMap<>(LeagueService.Draft.class);
+        for (LeagueService.Draft draft : LeagueService.Draft.values()) {
+            drafts.put(draft, new LongAdder());
+        }
+        List<String> problems = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int added = 0;
+                try {
+                    while (running.get()) {
+                        Team team = teams[random.nextInt(teams.length)];
+                        int roll = random.nextInt(10000);
+                        if (roll < 6000) {
+                            int position = random.nextInt(league.players().length);
+                            drafts.get(league.draft(position, team)).increment();
+                        } else if (roll < 8500) {
+                            List<Player> roster = league.roster(team);
+                            if (!roster.isEmpty()) {
+                                league.undraft(roster.get(random.nextInt(roster.size())), team);
+                            }
+                        } else if (roll < 9500) {
+                            league.roster(team);
+                        } else if (roll < 9990) {
+                            league.search(String.valueOf((char) ('a' + random.nextInt(26))), true).size();
+                        } else if (roll < 9998) {
+                            league.waitlist(new Player("Stress" + worker, "Player" + added++, 35 + random.nextInt(13),
+                                    random.nextBoolean(), false));
+                            league.replace(random.nextInt(league.players().length));
+                        } else {
+                            league.optimize(null);
+                        }
+                        operations.increment();
+                    }
+                } catch (RuntimeException e) {
+                    problems.add(Thread.currentThread().getName() + " failed: " + e);
+                } finally {
+                    done.countDown();
+                }
+            }, "stress-" + t);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        int checks = 0;
+        while (System.nanoTime() < end && problems.isEmpty()) {
+            Thread.sleep(CHECK_MILLIS);
+            problems.addAll(league.verify());
+            checks++;
+        }
+        running.set(false);
+        done.await();
+        problems.addAll(league.verify());
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d threads, %d players on %d teams, %.1f seconds%n", threads, players.length,
+                teams.length, elapsed);
+        System.out.printf("%,d operations (%,.0f per second), %d checks%n", operations.sum(),
+                operations.sum() / elapsed, checks + 1);
+        for (Map.Entry<LeagueService.Draft, LongAdder> draft : drafts.entrySet()) {
+            System.out.printf("  draft %-9s %,d%n", draft.getKey(), draft.getValue().sum());
+        }
+        if (problems.isEmpty()) {
+            System.out.println("No player was ever on two teams.");
+        } else {
+            System.out.printf("%d problems, the first ones:%n", problems.size());
+            for (String problem : problems.subList(0, Math.min(10, problems.size()))) {
+                System.out.println("  " + problem);
+            }
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/*Loads the teams.ser, players.ser and waitinglist.ser files in bench/baseline-save, which were written by the first
+version of the program (33 example players optimized onto three teams, one player waiting), the same way the menus
+read an old save. Checks that every team and player comes back, that each roster's running sums match its players,
+and that the loaded league passes LeagueService.verify():
+    --dir bench/baseline-save   folder holding the three .ser files
+Exits with status 1 if the files can't be read or anything doesn't match.*/
+public class LegacySaveCheck {
+    private static final double EPSILON = 1e-9;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        Path directory = Paths.get(options.getOrDefault("dir", "bench/baseline-save"));
+
+        LeagueSnapshot loaded = LeagueSnapshot.readSerialized(directory);
+        List<String> problems = new ArrayList<>();
+        if (loaded.getPlayers().length != 33) {
+            problems.add(loaded.getPlayers().length + " players instead of 33");
+        }
+        if (loaded.getTeams().size() != 3) {
+            problems.add(loaded.getTeams().size() + " teams instead of 3");
+        }
+        if (loaded.getWaitingList().size() != 1) {
+            problems.add(loaded.getWaitingList().size() + " players waiting instead of 1");
+        }
+        for (Map.Entry<Team, Set<Player>> entry : loaded.getTeams().entrySet()) {
+            Team team = entry.getKey();
+            if (entry.getValue() != team.playerSet) {
+                problems.add(team + " is listed with a different roster than its own");
+            }
+            double total = 0;
+            for (Player player : team.playerSet) {
+                total += player.abilityScore();
+            }
+            if (Math.abs(total - team.totalAbilityScore()) > EPSILON) {
+                problems.add(team + " has a total ability score of " + team.totalAbilityScore() + " instead of "
+                        + total);
+            }
+        }
+        LeagueService league = new LeagueService(loaded.getPlayers(), loaded.getTeams(), loaded.getWaitingList());
+        problems.addAll(league.verify());
+
+        if (problems.isEmpty()) {
+            System.out.printf("Loaded %d players on %d teams from %s.%n", loaded.getPlayers().length,
+                    loaded.getTeams().size(), directory);
+        } else {
+            System.out.println("The old save did not load correctly:");
+            for (String problem : problems) {
+                System.out.println("  " + problem);
+            }
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*Starts a LeagueServer on a league of synthetic players, fills it with idle coaches sitting at the main menu, and then
+drives scripted sessions through it from many clients at once: coaches viewing a roster, organizers reading the
+fairness report and height distribution, and now and then an organizer optimizing the whole league. Every scripted
+session has to end with the goodbye message, and the league is checked with LeagueService.verify() at the end:
+    --idle 2000         connections opened first and left waiting at the main menu
+    --sessions 2000     scripted sessions to run
+    --clients 64        scripted sessions running at once
+    --players 1000      league size; there are enough teams of 11 for everyone
+Exits with status 1 if any session failed.*/
+public class SessionLoadTest {
+    private static final String GOODBYE = "Thanks for visiting the Youth Soccer League!";
+    private static final String[] SCRIPTS = {
+            "2\n1\n1\n\n3\n3\n",
+            "2\n1\n2\n\n3\n3\n",
+            "1\n6\n3\n\n5\n8\n3\n",
+            "1\n6\n4\n\n5\n8\n3\n",
+    };
+    private static final String OPTIMIZE = "1\n10\n8\n3\n";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int idle = Integer.parseInt(options.getOrDefault("idle", "2000"));
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "2000"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        int size = Integer.parseInt(options.getOrDefault("players", "1000"));
+
+        Player[] players = LeagueFixtures.players(size);
+        Set<Player> unique = new TreeSet<>(Arrays.asList(players));
+        players = unique.toArray(new Player[unique.size()]);
+        LeagueService league = new LeagueService(players,
+                LeagueFixtures.teams(LeagueFixtures.fullLeagueTeams(players.length)), new ArrayDeque<>());
+        league.optimize(null);
+
+        try (LeagueServer server = new LeagueServer(league, 0)) {
+            server.start();
+            System.out.printf("Sessions run on %s threads%n", server.isVirtual() ? "virtual" : "platform");
+
+            long heapBefore = usedHeap();
+            int threadsBefore = Thread.activeCount();
+            List<Socket> idleSockets = new ArrayList<>();
+            for (int i = 0; i < idle; i++) {
+                idleSockets.add(new Socket(InetAddress.getLoopbackAddress(), server.getPort()));
+            }
+            long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (server.sessionCount() < idle && System.nanoTime() < waitUntil) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(500);
+            long heapIdle = usedHeap();
+            System.out.printf("%,d idle sessions: %,d KB more heap (%.1f KB each), %d more threads%n",
+                    server.sessionCount(), (heapIdle - heapBefore) / 1024,
+                    (heapIdle - heapBefore) / 1024.0 / Math.max(1, idle), Thread.activeCount() - threadsBefore);
+
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            List<Future<Long>> results = new ArrayList<>();
+            AtomicInteger failures = new AtomicInteger();
+            long start = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                String script = i % 100 == 99 ? OPTIMIZE : SCRIPTS[i % SCRIPTS.length];
+                results.add(pool.submit(() -> session(server.getPort(), script, failures)));
+            }
+            long[] latencies = new long[sessions];
+            for (int i = 0; i < sessions; i++) {
+                latencies[i] = results.get(i).get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+            Arrays.sort(latencies);
+            System.out.printf("%,d scripted sessions from %d clients in %.2f s (%,.0f sessions/s)%n", sessions, clients,
+                    seconds, sessions / seconds);
+            System.out.printf("session time p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    latencies[sessions / 2] / 1e6, latencies[Math.min(sessions - 1, sessions * 99 / 100)] / 1e6,
+                    latencies[sessions - 1] / 1e6);
+
+            for (Socket socket : idleSockets) {
+                socket.close();
+            }
+            List<String> problems = league.verify();
+            if (failures.get() > 0 || !problems.isEmpty()) {
+                System.out.printf("%d sessions failed, %d problems in the league%n", failures.get(), problems.size());
+                for (String problem : problems.subList(0, Math.min(10, problems.size()))) {
+                    System.out.println("  " + problem);
+                }
+                System.exit(1);
+            }
+            System.out.println("Every session finished and the league is consistent.");
+        }
+    }
+
+    /*Types the whole script, then reads until the server hangs up. Returns how long the session took*/
+    private static long session(int port, String script, AtomicInteger failures) {
+        long start = System.nanoTime();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(60000);
+            OutputStream out = socket.getOutputStream();
+            out.write(script.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            boolean finished = false;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                finished |= line.startsWith(GOODBYE);
+            }
+            if (!finished) {
+                failures.incrementAndGet();
+            }
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
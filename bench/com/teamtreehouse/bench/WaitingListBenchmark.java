@@ -0,0 +1,133 @@
+package com.teamtreehouse.bench;
+
+import com.teamtreehouse.model.Player;
+import com.teamtreehouse.model.WaitingList;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*Registration desks adding players to the waiting list while organizers take them off, all at once: producer threads
+add every player once and consumer threads take them until all are gone. Compares WaitingList (first come, first
+served, and priority order taken with poll() and with poll(targetScore)) against an ArrayDeque behind a lock, which
+is what the waiting list used to be:
+    --producers 4 --consumers 4   threads on each side
+    --players 1000000             players added (and taken) per round
+    --rounds 5                    measured rounds, after one warmup round
+Each line reports adds plus takes per second, best round and average.*/
+public class WaitingListBenchmark {
+
+    /*One waiting list being measured: how to make it empty, add to it and take from it*/
+    private static class Candidate<Q> {
+        private final String name;
+        private final Supplier<Q> create;
+        private final BiConsumer<Q, Player> add;
+        private final Function<Q, Player> take;
+
+        private Candidate(String name, Supplier<Q> create, BiConsumer<Q, Player> add, Function<Q, Player> take) {
+            this.name = name;
+            this.create = create;
+            this.add = add;
+            this.take = take;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int producers = Integer.parseInt(options.getOrDefault("producers", "4"));
+        int consumers = Integer.parseInt(options.getOrDefault("consumers", "4"));
+        int count = Integer.parseInt(options.getOrDefault("players", "1000000"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        Player[] players = LeagueFixtures.players(count);
+
+        List<Candidate<?>> candidates = Arrays.asList(
+                new Candidate<ArrayDeque<Player>>("synchronized ArrayDeque", ArrayDeque::new,
+                        (queue, player) -> {
+                            synchronized (queue) {
+                                queue.offer(player);
+                            }
+                        },
+                        queue -> {
+                            synchronized (queue) {
+                                return queue.poll();
+                            }
+                        }),
+                new Candidate<WaitingList>("WaitingList", WaitingList::new, WaitingList::offer, WaitingList::poll),
+                new Candidate<WaitingList>("WaitingList priority", () -> new WaitingList(true), WaitingList::offer,
+                        WaitingList::poll),
+                new Candidate<WaitingList>("WaitingList priority+target", () -> new WaitingList(true),
+                        WaitingList::offer, list -> list.poll(85 + ThreadLocalRandom.current().nextInt(13))));
+
+        System.out.printf("%d producers, %d consumers, %,d players per round%n", producers, consumers, count);
+        for (Candidate<?> candidate : candidates) {
+            double best = 0;
+            double total = 0;
+            for (int round = 0; round <= rounds; round++) {
+                double perSecond = round(candidate, players, producers, consumers);
+                if (round > 0) {
+                    best = Math.max(best, perSecond);
+                    total += perSecond;
+                }
+            }
+            System.out.printf("%-28s %,14.0f ops/s best %,14.0f ops/s average%n", candidate.name, best,
+                    total / rounds);
+        }
+    }
+
+    private static <Q> double round(Candidate<Q> candidate, Player[] players, int producers, int consumers)
+            throws InterruptedException {
+        Q queue = candidate.create.get();
+        AtomicLong taken = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers + consumers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int from = (int) ((long) players.length * p / producers);
+            int to = (int) ((long) players.length * (p + 1) / producers);
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = from; i < to; i++) {
+                    candidate.add.accept(queue, players[i]);
+                }
+                done.countDown();
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (taken.get() < players.length) {
+                    if (candidate.take.apply(queue) != null) {
+                        taken.incrementAndGet();
+                    } else {
+                        Thread.onSpinWait();
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return 2.0 * players.length / seconds;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import com.teamtreehouse.model.BatchJob;
+import com.teamtreehouse.model.LeagueServer;
 import com.teamtreehouse.model.Menu;
 import com.teamtreehouse.model.Player;
 import com.teamtreehouse.model.Players;
@@ -13,9 +15,39 @@ import java.util.TreeSet;
 public class LeagueManager {
 
   public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals("--serve")) {
+      serve(args);
+      return;
+    }
+    if (args.length > 0) {
+      runBatch(args);
+      return;
+    }
     Menu menu = new Menu();
     menu.run();
   }
 
+  /*--serve [port] shares one league between many menu sessions over a local port instead (see LeagueServer)*/
+  private static void serve(String[] args) {
+    try {
+      LeagueServer.serve(args.length > 1 ? Integer.parseInt(args[1]) : LeagueServer.DEFAULT_PORT);
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("The server could not be started: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /*With arguments the league runs as a batch job instead of showing the menus (see BatchJob)*/
+  private static void runBatch(String[] args) {
+    try {
+      if (!BatchJob.fromArgs(args, System.out).run()) {
+        System.exit(1);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("The job could not be read: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
 
 }
@@ -0,0 +1,76 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+
+/*Settings for BalancedOptimizer. The three weights say how much each goal counts when a player could go to more than
+one team:
+    -height: every team's average height close to the league's
+    -experience: experienced players spread out evenly
+    -size: every team the same size
+A weight of 0 turns a goal off. Rosters never grow past maxRosterSize.
+
+On top of the weights there are hard rules: groups of players (siblings, say) that have to end up on the same team,
+and players (a coach's child, say) that have to be on a given team.*/
+public class BalanceOptions {
+    private final double heightWeight;
+    private final double experienceWeight;
+    private final double sizeWeight;
+    private final int maxRosterSize;
+    private final List<List<Player>> together = new ArrayList<>();
+    private final Map<Player, Team> pinned = new LinkedHashMap<>();
+
+    public BalanceOptions(int maxRosterSize) {
+        this(1, 1, 1, maxRosterSize);
+    }
+
+    public BalanceOptions(double heightWeight, double experienceWeight, double sizeWeight, int maxRosterSize) {
+        if (heightWeight < 0 || experienceWeight < 0 || sizeWeight < 0) {
+            throw new IllegalArgumentException("Weights can't be negative.");
+        }
+        if (maxRosterSize < 1) {
+            throw new IllegalArgumentException("Rosters need room for at least one player.");
+        }
+        this.heightWeight = heightWeight;
+        this.experienceWeight = experienceWeight;
+        this.sizeWeight = sizeWeight;
+        this.maxRosterSize = maxRosterSize;
+    }
+
+    /*These players have to be on the same team*/
+    public BalanceOptions keepTogether(Collection<Player> players) {
+        if (players.size() > 1) {
+            together.add(new ArrayList<>(players));
+        }
+        return this;
+    }
+
+    /*This player has to be on this team. Anyone kept together with them comes along*/
+    public BalanceOptions pin(Player player, Team team) {
+        pinned.put(player, team);
+        return this;
+    }
+
+    public double getHeightWeight() {
+        return heightWeight;
+    }
+
+    public double getExperienceWeight() {
+        return experienceWeight;
+    }
+
+    public double getSizeWeight() {
+        return sizeWeight;
+    }
+
+    public int getMaxRosterSize() {
+        return maxRosterSize;
+    }
+
+    public List<List<Player>> getTogether() {
+        return Collections.unmodifiableList(together);
+    }
+
+    public Map<Player, Team> getPinned() {
+        return Collections.unmodifiableMap(pinned);
+    }
+}
@@ -0,0 +1,426 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+
+/*An alternative to Players.optimizeTeams that balances height, experience and team size as separate goals (weighted
+by BalanceOptions) instead of one ability score, never lets a roster grow past the maximum size, and follows the
+options' rules about who has to play together or for which team.
+
+Players are placed one at a time, most unusual first, each on the team where they do the most good. A team's
+imbalance is measured as how far its height total and its number of experienced players are from what a team of its
+size would have at the league's averages (in standard deviations), and how far its size is from an even split. The
+cost of adding a player to a team is then a simple linear function of that team's imbalance, whose direction only
+depends on the player's height and experience. So for every distinct height/experience combination the teams are
+kept in a heap by that cost, and the best team for a player is the top of their combination's heap. Placing a player
+only moves the team that got them. Groups kept together, and leagues with too many distinct heights, fall
+back to checking every team.*/
+public class BalancedOptimizer {
+    private static final int MAX_SORTED_KINDS = 64;
+
+    private final Player[] players;
+    private final Team[] teams;
+    private final BalanceOptions options;
+    private final double heightWeight;
+    private final double experienceWeight;
+    private final double sizeWeight;
+    private final double meanHeight;
+    private final double meanExperience;
+    private final double target;
+    private final int[] sizes;
+    private final long[] heights;
+    private final int[] experienced;
+    private final List<Player> dropped = new ArrayList<>();
+    private Map<Integer, Integer> kindIds;
+    private CostHeap[] heaps;
+    private double[] kindHeights;
+    private double[] kindExperience;
+
+    private BalancedOptimizer(Player[] players, Team[] teams, BalanceOptions options) {
+        this.players = players;
+        this.teams = teams;
+        this.options = options;
+        long heightSum = 0;
+        long experienceSum = 0;
+        for (Player player : players) {
+            heightSum += player.getHeightInInches();
+            experienceSum += player.isPreviousExperience() ? 1 : 0;
+        }
+        meanHeight = players.length == 0 ? 0 : (double) heightSum / players.length;
+        meanExperience = players.length == 0 ? 0 : (double) experienceSum / players.length;
+        double heightVariance = 0;
+        for (Player player : players) {
+            double difference = player.getHeightInInches() - meanHeight;
+            heightVariance += difference * difference;
+        }
+        heightVariance = players.length == 0 ? 0 : heightVariance / players.length;
+        double experienceVariance = meanExperience * (1 - meanExperience);
+        heightWeight = options.getHeightWeight() / (heightVariance > 1e-9 ? heightVariance : 1);
+        experienceWeight = options.getExperienceWeight() / (experienceVariance > 1e-9 ? experienceVariance : 1);
+        sizeWeight = options.getSizeWeight();
+        target = teams.length == 0 ? 0 : (double) players.length / teams.length;
+        sizes = new int[teams.length];
+        heights = new long[teams.length];
+        experienced = new int[teams.length];
+    }
+
+    /*Empties every roster and fills them again. Returns the players who couldn't be placed because every team they
+    could go to was full; they are left as free agents. Everyone else is marked drafted. Throws
+    IllegalArgumentException if the rules can't all be kept (a player pinned to two teams, or more players pinned to
+    a team than fit on it)*/
+    public static List<Player> optimize(Player[] players, Map<Team, Set<Player>> teams, BalanceOptions options) {
+        Team[] teamArray = teams.keySet().toArray(new Team[teams.size()]);
+        BalancedOptimizer optimizer = new BalancedOptimizer(players, teamArray, options);
+        int[][] units = optimizer.units();
+        optimizer.checkPins(units);
+        for (Team team : teamArray) {
+            team.playerSet.clear();
+            teams.put(team, team.playerSet);
+        }
+        return optimizer.place(units);
+    }
+
+    /*Splits the players into units that are placed together: each group kept together is one unit, everyone else a
+    unit of their own. The first number of a unit is the team it is pinned to, or -1*/
+    private int[][] units() {
+        Map<Player, Integer> positions = new HashMap<>();
+        for (int i = 0; i < players.length; i++) {
+            positions.putIfAbsent(players[i], i);
+        }
+        Map<Team, Integer> teamIndexes = new HashMap<>();
+        for (int t = 0; t < teams.length; t++) {
+            teamIndexes.put(teams[t], t);
+        }
+        int[] parent = new int[players.length];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (List<Player> group : options.getTogether()) {
+            int first = position(group.get(0), positions);
+            for (Player player : group) {
+                parent[root(parent, position(player, positions))] = root(parent, first);
+            }
+        }
+        int[] pins = new int[players.length];
+        Arrays.fill(pins, -1);
+        for (Map.Entry<Player, Team> pin : options.getPinned().entrySet()) {
+            Integer team = teamIndexes.get(pin.getValue());
+            if (team == null) {
+                throw new IllegalArgumentException(pin.getValue() + " isn't one of the league's teams.");
+            }
+            int root = root(parent, position(pin.getKey(), positions));
+            if (pins[root] >= 0 && pins[root] != team) {
+                throw new IllegalArgumentException(pin.getKey().getFirstName() + " " + pin.getKey().getLastName()
+                        + " can't be on both " + teams[pins[root]] + " and "
+                        + pin.getValue() + ".");
+            }
+            pins[root] = team;
+        }
+        int[] counts = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            counts[root(parent, i)]++;
+        }
+        int[][] units = new int[players.length][];
+        int unitCount = 0;
+        int[] filled = new int[players.length];
+        int[] unitOf = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            int root = root(parent, i);
+            if (root == i) {
+                unitOf[i] = unitCount;
+                units[unitCount] = new int[counts[i] + 1];
+                units[unitCount][0] = pins[i];
+                unitCount++;
+            }
+        }
+        for (int i = 0; i < players.length; i++) {
+            int root = root(parent, i);
+            units[unitOf[root]][1 + filled[root]++] = i;
+        }
+        return Arrays.copyOf(units, unitCount);
+    }
+
+    /*Makes sure the pinned players fit on their teams before any roster is touched*/
+    private void checkPins(int[][] units) {
+        int[] pinned = new int[teams.length];
+        for (int[] unit : units) {
+            if (unit[0] >= 0) {
+                pinned[unit[0]] += unit.length - 1;
+                if (pinned[unit[0]] > options.getMaxRosterSize()) {
+                    throw new IllegalArgumentException("More players are pinned to " + teams[unit[0]]
+                            + " than fit on one team.");
+                }
+            }
+        }
+    }
+
+    private static int position(Player player, Map<Player, Integer> positions) {
+        Integer position = positions.get(player);
+        if (position == null) {
+            throw new IllegalArgumentException(player.getFirstName() + " " + player.getLastName()
+                    + " isn't in the league.");
+        }
+        return position;
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private List<Player> place(int[][] units) {
+        for (int[] unit : units) {
+            if (unit[0] >= 0) {
+                add(unit, unit[0]);
+            }
+        }
+        Integer[] order = new Integer[units.length];
+        double[] deviations = new double[units.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            deviations[i] = deviation(units[i]);
+        }
+        Arrays.sort(order, (a, b) -> {
+            if (units[a].length != units[b].length) {
+                return units[a].length > units[b].length ? -1 : 1;
+            }
+            int byDeviation = Double.compare(deviations[b], deviations[a]);
+            return byDeviation != 0 ? byDeviation : Integer.compare(a, b);
+        });
+        sortTeams(units);
+        List<Player> unplaced = dropped;
+        for (int u : order) {
+            int[] unit = units[u];
+            if (unit[0] >= 0) {
+                continue;
+            }
+            int team = unit.length == 2 && heaps != null ? bestSorted(unit) : bestScanned(unit);
+            if (team < 0) {
+                for (int i = 1; i < unit.length; i++) {
+                    unplaced.add(players[unit[i]]);
+                }
+            } else {
+                add(unit, team);
+            }
+        }
+        for (Player player : players) {
+            player.setDrafted();
+        }
+        for (Player player : unplaced) {
+            player.notDrafted();
+        }
+        return unplaced;
+    }
+
+    /*How far from an average player a unit is, so the hardest players to balance are placed while there is still
+    room to balance them*/
+    private double deviation(int[] unit) {
+        double height = 0;
+        double experience = 0;
+        for (int i = 1; i < unit.length; i++) {
+            height += players[unit[i]].getHeightInInches() - meanHeight;
+            experience += (players[unit[i]].isPreviousExperience() ? 1 : 0) - meanExperience;
+        }
+        return Math.abs(height) * Math.sqrt(heightWeight) + Math.abs(experience) * Math.sqrt(experienceWeight);
+    }
+
+    /*Builds one heap of teams for every height/experience combination among the players placed alone, unless there
+    are too many combinations to keep up to date*/
+    private void sortTeams(int[][] units) {
+        Map<Integer, Integer> kinds = new LinkedHashMap<>();
+        for (int[] unit : units) {
+            if (unit[0] < 0 && unit.length == 2) {
+                kinds.putIfAbsent(kind(players[unit[1]]), kinds.size());
+                if (kinds.size() > MAX_SORTED_KINDS) {
+                    return;
+                }
+            }
+        }
+        kindIds = kinds;
+        kindHeights = new double[kinds.size()];
+        kindExperience = new double[kinds.size()];
+        heaps = new CostHeap[kinds.size()];
+        for (Map.Entry<Integer, Integer> kind : kinds.entrySet()) {
+            int k = kind.getValue();
+            kindHeights[k] = (kind.getKey() >> 1) - meanHeight;
+            kindExperience[k] = (kind.getKey() & 1) - meanExperience;
+            heaps[k] = new CostHeap(teams.length);
+        }
+        for (int t = 0; t < teams.length; t++) {
+            resort(t);
+        }
+    }
+
+    /*Works out a team's cost for every kind of player again, or takes it out of the heaps once it is full*/
+    private void resort(int team) {
+        for (int k = 0; k < heaps.length; k++) {
+            if (sizes[team] >= options.getMaxRosterSize()) {
+                heaps[k].remove(team);
+            } else {
+                heaps[k].update(team, slope(team, kindHeights[k], kindExperience[k], 1));
+            }
+        }
+    }
+
+    private static int kind(Player player) {
+        return player.getHeightInInches() << 1 | (player.isPreviousExperience() ? 1 : 0);
+    }
+
+    /*The part of the cost of adding a unit to a team that differs from team to team. The full cost is the change in
+    weight * imbalance^2 for each goal; for a unit that is height and experience away from the averages (in total)
+    and has size players, the squared terms of the unit itself are the same for every team and drop out*/
+    private double slope(int team, double height, double experience, int size) {
+        return heightWeight * height * (heights[team] - sizes[team] * meanHeight)
+                + experienceWeight * experience * (experienced[team] - sizes[team] * meanExperience)
+                + sizeWeight * size * (sizes[team] - target);
+    }
+
+    /*The cheapest team for a player placed alone, from their kind's heap. If someone with the same name is already
+    on that team, every team is checked instead*/
+    private int bestSorted(int[] unit) {
+        int team = heaps[kindIds.get(kind(players[unit[1]]))].lowest();
+        if (team >= 0 && !teams[team].playerSet.contains(players[unit[1]])) {
+            return team;
+        }
+        return team < 0 ? -1 : bestScanned(unit);
+    }
+
+    private int bestScanned(int[] unit) {
+        double height = 0;
+        double experience = 0;
+        for (int i = 1; i < unit.length; i++) {
+            height += players[unit[i]].getHeightInInches() - meanHeight;
+            experience += (players[unit[i]].isPreviousExperience() ? 1 : 0) - meanExperience;
+        }
+        int best = -1;
+        double bestCost = 0;
+        for (int team = 0; team < teams.length; team++) {
+            if (sizes[team] + unit.length - 1 > options.getMaxRosterSize() || !fits(unit, team)) {
+                continue;
+            }
+            double cost = slope(team, height, experience, unit.length - 1);
+            if (best < 0 || cost < bestCost) {
+                best = team;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /*Rosters drop a player with the same name as one already on them (a pinned player who is dropped that way is
+    reported as unplaced), so a unit only fits if nobody in it has the
+    same name as someone on the team or someone else in the unit*/
+    private boolean fits(int[] unit, int team) {
+        Set<Player> names = new TreeSet<>(teams[team].playerSet);
+        for (int i = 1; i < unit.length; i++) {
+            if (!names.add(players[unit[i]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(int[] unit, int team) {
+        for (int i = 1; i < unit.length; i++) {
+            Player player = players[unit[i]];
+            if (!teams[team].addPlayer(player)) {
+                dropped.add(player);
+                continue;
+            }
+            sizes[team]++;
+            heights[team] += player.getHeightInInches();
+            experienced[team] += player.isPreviousExperience() ? 1 : 0;
+        }
+        if (heaps != null) {
+            resort(team);
+        }
+    }
+
+    /*A binary min-heap of teams by cost, which can change a team's cost or drop it in O(log t)*/
+    private static class CostHeap {
+        private final double[] costs;
+        private final int[] heap;
+        private final int[] position;
+        private int size;
+
+        CostHeap(int teams) {
+            costs = new double[teams];
+            heap = new int[teams];
+            position = new int[teams];
+            Arrays.fill(position, -1);
+        }
+
+        /*The cheapest team, or -1 if every team is full*/
+        int lowest() {
+            return size == 0 ? -1 : heap[0];
+        }
+
+        void update(int team, double cost) {
+            costs[team] = cost;
+            if (position[team] < 0) {
+                place(team, size++);
+            }
+            siftUp(position[team]);
+            siftDown(position[team]);
+        }
+
+        void remove(int team) {
+            int slot = position[team];
+            if (slot < 0) {
+                return;
+            }
+            position[team] = -1;
+            size--;
+            if (slot < size) {
+                int moved = heap[size];
+                place(moved, slot);
+                siftUp(slot);
+                siftDown(position[moved]);
+            }
+        }
+
+        private void siftUp(int slot) {
+            int team = heap[slot];
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (compare(team, heap[parent]) >= 0) {
+                    break;
+                }
+                place(heap[parent], slot);
+                slot = parent;
+            }
+            place(team, slot);
+        }
+
+        private void siftDown(int slot) {
+            int team = heap[slot];
+            int half = size >>> 1;
+            while (slot < half) {
+                int child = 2 * slot + 1;
+                int right = child + 1;
+                if (right < size && compare(heap[right], heap[child]) < 0) {
+                    child = right;
+                }
+                if (compare(team, heap[child]) <= 0) {
+                    break;
+                }
+                place(heap[child], slot);
+                slot = child;
+            }
+            place(team, slot);
+        }
+
+        private void place(int team, int slot) {
+            heap[slot] = team;
+            position[team] = slot;
+        }
+
+        /*Cheapest first, ties going to the team that comes first in the league*/
+        private int compare(int a, int b) {
+            int byCost = Double.compare(costs[a], costs[b]);
+            return byCost != 0 ? byCost : Integer.compare(a, b);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/*Runs the league without the menus, for scripted builds. The steps always run in this order, and only the ones asked
+for run:
+    load      read a saved league (league.snapshot unless another file is given); without one, the league starts
+              from the example players like the menus do
+    import    add players from registration files (see PlayerImporter)
+    teams     add teams, as name:coach pairs separated by commas, or "auto" for enough teams of 11 for everyone
+    optimize  greedy, refined (greedy plus SwapRefiner) or balanced (BalancedOptimizer)
+    report    print the fairness report
+    save      write the league (to league.snapshot unless another file is given)
+The steps can be given on the command line,
+    java LeagueManager --load --import signups.csv --teams auto --optimize refined --report --save
+or in a job file with one step per line, the same words without the dashes (lines starting with # are skipped),
+    java LeagueManager --job nightly.job
+Every step prints how long it took.
+
+Changes made in the menus are kept in league.journal until the league is saved, and a batch job doesn't read the
+journal, so a job refuses to load or save a league while its journal still has changes in it. Saving over them would
+leave them to be replayed onto a league they weren't made in.*/
+public class BatchJob {
+    private static final long REFINE_MILLIS = 500;
+    private static final String[] STEPS = {"load", "import", "teams", "optimize", "report", "save"};
+    private static final Set<String> OPTIONAL_VALUES = new HashSet<>(Arrays.asList("load", "report", "save"));
+
+    private final Map<String, List<String>> steps = new HashMap<>();
+    private final PrintStream out;
+    private Player[] players = new Player[0];
+    private ScoreIndex scores;
+    private Map<Team, Set<Player>> teams = new TreeMap<>();
+    private Queue<Player> waitingList = new ArrayDeque<>();
+    private long journalSequence;
+
+    public BatchJob(PrintStream out) {
+        this.out = out;
+    }
+
+    /*Reads the steps from command line arguments. Throws IllegalArgumentException for anything it doesn't
+    understand*/
+    public static BatchJob fromArgs(String[] args, PrintStream out) throws IOException {
+        BatchJob job = new BatchJob(out);
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected a step like --load instead of " + args[i]);
+            }
+            String step = args[i].substring(2);
+            String value = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : null;
+            if (step.equals("job")) {
+                if (value == null) {
+                    throw new IllegalArgumentException("--job needs the name of a job file.");
+                }
+                job.readJobFile(Paths.get(value));
+            } else {
+                job.add(step, value);
+            }
+        }
+        return job;
+    }
+
+    private void readJobFile(Path file) throws IOException {
+        for (String line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            add(parts[0], parts.length > 1 ? parts[1].trim() : null);
+        }
+    }
+
+    private void add(String step, String value) {
+        if (!Arrays.asList(STEPS).contains(step)) {
+            throw new IllegalArgumentException("Unknown step " + step + ". The steps are " + String.join(", ", STEPS)
+                    + ".");
+        }
+        if (value == null && !OPTIONAL_VALUES.contains(step)) {
+            throw new IllegalArgumentException("The " + step + " step needs a value.");
+        }
+        steps.computeIfAbsent(step, name -> new ArrayList<>()).add(value);
+    }
+
+    /*Runs every step that was asked for. Returns false (after saying why) if one of them failed; later steps are
+    then skipped, so a failed job never saves a half-built league*/
+    public boolean run() {
+        long jobStart = System.nanoTime();
+        for (String step : STEPS) {
+            if (!steps.containsKey(step)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            String summary;
+            try {
+                summary = runStep(step, steps.get(step));
+            } catch (IOException | RuntimeException e) {
+                out.printf("[%s] failed: %s%n", step, e.getMessage());
+                return false;
+            }
+            out.printf("[%s] %.1f ms - %s%n", step, (System.nanoTime() - start) / 1e6, summary);
+        }
+        out.printf("[job] %.1f ms in total%n", (System.nanoTime() - jobStart) / 1e6);
+        return true;
+    }
+
+    private String runStep(String step, List<String> values) throws IOException {
+        switch (step) {
+            case "load":
+                return load(values.get(values.size() - 1));
+            case "import":
+                return importPlayers(values);
+            case "teams":
+                return addTeams(values);
+            case "optimize":
+                return optimize(values.get(values.size() - 1));
+            case "report":
+                return report();
+            default:
+                return save(values.get(values.size() - 1));
+        }
+    }
+
+    /*Without a file the league the menus saved is loaded, from its segments or an older snapshot; a file given is read
+    as a single snapshot*/
+    private String load(String file) throws IOException {
+        Path path = Paths.get(file != null ? file : Files.exists(Paths.get(SegmentedSnapshot.FILE_NAME))
+                ? SegmentedSnapshot.FILE_NAME : LeagueSnapshot.FILE_NAME);
+        checkJournal();
+        if (Files.exists(path)) {
+            LeagueSnapshot snapshot = path.toString().equals(SegmentedSnapshot.FILE_NAME)
+                    ? SegmentedSnapshot.read(path) : LeagueSnapshot.read(path);
+            players = snapshot.getPlayers();
+            scores = null;
+            teams = snapshot.getTeams();
+            waitingList = snapshot.getWaitingList();
+            journalSequence = snapshot.getJournalSequence();
+            return String.format("%d players and %d teams from %s", players.length, teams.size(), path);
+        }
+        Set<Player> alphabetical = new TreeSet<>();
+        Collections.addAll(alphabetical, Players.load());
+        players = alphabetical.toArray(new Player[alphabetical.size()]);
+        scores = null;
+        return String.format("no %s, starting from the %d example players", path, players.length);
+    }
+
+    /*Throws if the menus' journal has changes that haven't been saved yet*/
+    private void checkJournal() throws IOException {
+        Path journal = Paths.get(LeagueJournal.FILE_NAME);
+        if (Files.exists(journal) && Files.size(journal) > 0) {
+            throw new IOException(LeagueJournal.FILE_NAME + " still has unsaved changes from the menus. Start the " +
+                    "program and quit it once to save them first.");
+        }
+    }
+
+    private String importPlayers(List<String> files) throws IOException {
+        long rows = 0;
+        long duplicates = 0;
+        long rejected = 0;
+        long imported = 0;
+        for (String file : files) {
+            List<Player> existing = new ArrayList<>(players.length + waitingList.size());
+            Collections.addAll(existing, players);
+            existing.addAll(waitingList);
+            PlayerImporter.Result result = new PlayerImporter(existing, 10000)
+                    .importFile(Paths.get(file), this::appendPlayers);
+            rows += result.getRows();
+            imported += result.getImported();
+            duplicates += result.getDuplicates();
+            rejected += result.getRejected();
+        }
+        scores = null;
+        return String.format("%d of %d rows imported (%d already in the league, %d could not be read)",
+                imported, rows, duplicates, rejected);
+    }
+
+    /*Adds one batch of imported players to the end of the player list as soon as it is read*/
+    private void appendPlayers(List<Player> batch) {
+        int start = players.length;
+        players = Arrays.copyOf(players, start + batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            players[start + i] = batch.get(i);
+        }
+    }
+
+    /*The players sorted by ability score, sorted once and shared by the optimize and report steps*/
+    private ScoreIndex scores() {
+        if (scores == null) {
+            scores = new ScoreIndex(players);
+        }
+        return scores;
+    }
+
+    private String addTeams(List<String> values) {
+        Set<String> names = new HashSet<>();
+        for (Team team : teams.keySet()) {
+            names.add(team.getName());
+        }
+        int added = 0;
+        for (String value : values) {
+            if (value.equals("auto")) {
+                int wanted = (int) Math.ceil(players.length / (double) LeagueService.MAX_PLAYERS);
+                for (int number = 1; names.size() < wanted; number++) {
+                    added += addTeam(String.format("Team %d", number), "To be announced", names);
+                }
+                continue;
+            }
+            for (String pair : value.split(",")) {
+                String[] parts = pair.split(":", 2);
+                if (parts.length < 2 || parts[0].trim().isEmpty() || parts[1].trim().isEmpty()) {
+                    throw new IllegalArgumentException("Teams are given as name:coach, not " + pair);
+                }
+                if (addTeam(parts[0].trim(), parts[1].trim(), names) == 0) {
+                    throw new IllegalArgumentException("There is already a team called " + parts[0].trim() + ".");
+                }
+                added++;
+            }
+        }
+        return String.format("%d teams added, %d in the league", added, teams.size());
+    }
+
+    private int addTeam(String name, String coach, Set<String> names) {
+        if (!names.add(name)) {
+            return 0;
+        }
+        Team team = new Team(name, coach);
+        teams.put(team, team.playerSet);
+        return 1;
+    }
+
+    private String optimize(String mode) {
+        if (teams.isEmpty()) {
+            throw new IllegalStateException("There are no teams to optimize. Add some with the teams step.");
+        }
+        switch (mode) {
+            case "greedy":
+                Players.optimizeTeams(scores(), teams, null);
+                return String.format("%d players on %d teams", players.length, teams.size());
+            case "refined":
+                double narrowed = Players.optimizeTeams(scores(), teams,
+                        new SwapRefiner(REFINE_MILLIS, Runtime.getRuntime().availableProcessors() > 1));
+                return String.format("%d players on %d teams, swaps narrowed the gap by %.2f points", players.length,
+                        teams.size(), narrowed);
+            case "balanced":
+                List<Player> unplaced = BalancedOptimizer.optimize(players, teams,
+                        new BalanceOptions(LeagueService.MAX_PLAYERS));
+                return String.format("%d players on %d teams, %d didn't fit", players.length - unplaced.size(),
+                        teams.size(), unplaced.size());
+            default:
+                throw new IllegalArgumentException("Optimize with greedy, refined or balanced, not " + mode);
+        }
+    }
+
+    private String report() {
+        FairnessReport report = FairnessReport.compute(teams.keySet(),
+                Players.highDiscrepancy(scores(), LeagueService.MAX_PLAYERS));
+        for (Team team : report.getEmptyTeams()) {
+            out.printf("%s has no players yet, so it is left out of the report.%n", team.toString());
+        }
+        report.print(out);
+        return String.format("fairness score %.0f%%", report.getFairnessScore());
+    }
+
+    /*Without a file the league is saved in segments where the menus will find it, writing only what the job changed;
+    a file given gets the whole league as a single snapshot*/
+    private String save(String file) throws IOException {
+        checkJournal();
+        LeagueSnapshot snapshot = new LeagueSnapshot(players, teams, waitingList, journalSequence);
+        Path path = Paths.get(file == null ? SegmentedSnapshot.FILE_NAME : file);
+        long bytes = file == null ? SegmentedSnapshot.write(path, snapshot) : snapshot.write(path);
+        return String.format("%d bytes written to %s", bytes, path);
+    }
+}
@@ -0,0 +1,88 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*Compresses the segments of a saved league (see SegmentedSnapshot) one block at a time, so every segment can still be
+written on its own and read back without the ones around it. The manifest records which codec the segments were
+written with, by id, so a league saved with one codec is still read correctly when another one is picked.
+
+Three come with the program:
+    -none (0): segments are stored as they are, and read in place from the mapped file without copying
+    -lz4 (1): Lz4Codec, fast to write and very fast to read, for the league the menus save all the time
+    -deflate (2): DeflateCodec, smaller but slower, for leagues kept around as archives
+The codec for saving is picked with -Dleague.codec=lz4|deflate|none and is lz4 when not given. Another codec only
+needs an unused id and an entry in forId() and forName().*/
+public interface BlockCodec {
+    String CODEC_PROPERTY = "league.codec";
+
+    BlockCodec NONE = new BlockCodec() {
+        @Override
+        public byte id() {
+            return 0;
+        }
+
+        @Override
+        public String name() {
+            return "none";
+        }
+
+        @Override
+        public byte[] compress(byte[] block) {
+            return block;
+        }
+
+        @Override
+        public ByteBuffer decompress(ByteBuffer block, int length) {
+            return block;
+        }
+    };
+
+    /*The number the manifest records for this codec. Never reuse one*/
+    byte id();
+
+    String name();
+
+    /*The block compressed. May return the block itself*/
+    byte[] compress(byte[] block);
+
+    /*The block from its position to its limit decompressed, length bytes long. Throws an IOException if the block
+    isn't what this codec wrote*/
+    ByteBuffer decompress(ByteBuffer block, int length) throws IOException;
+
+    static BlockCodec forId(byte id) throws IOException {
+        switch (id) {
+            case 0:
+                return NONE;
+            case 1:
+                return Lz4Codec.INSTANCE;
+            case 2:
+                return DeflateCodec.INSTANCE;
+            default:
+                throw new IOException("The league was saved with an unknown codec (" + id + ").");
+        }
+    }
+
+    /*Throws an IllegalArgumentException for a name that isn't one of the codecs*/
+    static BlockCodec forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "none":
+                return NONE;
+            case "lz4":
+                return Lz4Codec.INSTANCE;
+            case "deflate":
+                return DeflateCodec.INSTANCE;
+            default:
+                throw new IllegalArgumentException("There is no codec called " + name + ". Use lz4, deflate or none.");
+        }
+    }
+
+    /*The codec picked with -Dleague.codec, or lz4 if none was picked or the name isn't one of the codecs*/
+    static BlockCodec configured() {
+        try {
+            return forName(System.getProperty(CODEC_PROPERTY, "lz4"));
+        } catch (IllegalArgumentException e) {
+            return Lz4Codec.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*Deflate (zlib) from java.util.zip, at its default level. Segments come out about a sixth smaller again than with
+Lz4Codec, but compressing takes three times as long and decompressing five times, so it suits leagues kept as
+archives more than the one being worked on*/
+public class DeflateCodec implements BlockCodec {
+    public static final DeflateCodec INSTANCE = new DeflateCodec();
+
+    private DeflateCodec() {
+    }
+
+    @Override
+    public byte id() {
+        return 2;
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public byte[] compress(byte[] block) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(block);
+            deflater.finish();
+            byte[] out = new byte[block.length / 2 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public ByteBuffer decompress(ByteBuffer block, int length) throws IOException {
+        byte[] in = new byte[block.remaining()];
+        block.duplicate().get(in);
+        // One byte to spare, so a block that inflates to more than it should is caught rather than cut short
+        byte[] out = new byte[length + 1];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(in);
+            int inflated = 0;
+            while (!inflater.finished() && inflated < out.length) {
+                int count = inflater.inflate(out, inflated, out.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new IOException("A compressed block is damaged.");
+            }
+            return ByteBuffer.wrap(out, 0, length).slice();
+        } catch (DataFormatException e) {
+            throw new IOException("A compressed block is damaged.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/*Runs the same greedy assignment as Players.optimizeTeams for many divisions (age groups, say) at once, each division
+being its own task on a ForkJoinPool. Players.optimizeTeams can't do that: it clears and fills the teams' rosters and
+sets every player's drafted flag as it goes, so two of them running side by side on players or teams they share would
+trample each other.
+
+Here a division's task only reads. It sorts its players in its own ScoreIndex, hands them out with a TeamAssigner that
+starts every team empty without looking at their rosters, and keeps track of who went where in arrays of its own. The
+result is an Assignment per division, returned in the same order the divisions were given, so the outcome doesn't
+depend on how many threads ran or which finished first. Nothing in the league changes until apply() writes the
+assignments into the rosters, one division after another, on the caller's thread.
+
+Divisions can't share a team or a player; optimize() checks that before starting anything.*/
+public class DivisionOptimizer {
+    private static final Metrics.Timer DIVISIONS_TIMER = Metrics.timer("optimizeDivisions");
+
+    /*The players and teams of one division, in the order they were given*/
+    public static class Division {
+        private final String name;
+        private final Player[] players;
+        private final Team[] teams;
+
+        public Division(String name, Player[] players, Collection<Team> teams) {
+            this.name = name;
+            this.players = players.clone();
+            this.teams = teams.toArray(new Team[teams.size()]);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int playerCount() {
+            return players.length;
+        }
+
+        public Player player(int index) {
+            return players[index];
+        }
+
+        public int teamCount() {
+            return teams.length;
+        }
+
+        public Team team(int index) {
+            return teams[index];
+        }
+    }
+
+    /*Where one division's players go. Like Players.optimizeTeams, a player with the same score and name as one
+    already handed out, or with the same name as someone already on the team they would get, is left out*/
+    public static class Assignment {
+        private final Division division;
+        private final int[] teamOf;
+        private final int[] order;
+
+        private Assignment(Division division, int[] teamOf, int[] order) {
+            this.division = division;
+            this.teamOf = teamOf;
+            this.order = order;
+        }
+
+        public Division getDivision() {
+            return division;
+        }
+
+        /*The team the player at this index goes to, or null if they were left out*/
+        public Team teamOf(int index) {
+            return teamOf[index] < 0 ? null : division.teams[teamOf[index]];
+        }
+
+        /*Every team in the division with the players it gets, in the order they were handed out*/
+        public Map<Team, List<Player>> rosters() {
+            Map<Team, List<Player>> rosters = new LinkedHashMap<>();
+            for (Team team : division.teams) {
+                rosters.put(team, new ArrayList<>());
+            }
+            for (int index : order) {
+                if (teamOf[index] >= 0) {
+                    rosters.get(division.teams[teamOf[index]]).add(division.players[index]);
+                }
+            }
+            return rosters;
+        }
+    }
+
+    public static List<Assignment> optimize(List<Division> divisions) {
+        return optimize(divisions, ForkJoinPool.commonPool());
+    }
+
+    /*Works out every division's assignment, each on its own task in the pool. Throws an IllegalArgumentException if
+    a team or a player is in more than one division*/
+    public static List<Assignment> optimize(List<Division> divisions, ForkJoinPool pool) {
+        long start = Metrics.start();
+        Set<Team> teams = new HashSet<>();
+        Set<Player> players = Collections.newSetFromMap(new IdentityHashMap<>());
+        long playerCount = 0;
+        for (Division division : divisions) {
+            for (Team team : division.teams) {
+                if (!teams.add(team)) {
+                    throw new IllegalArgumentException(team + " is in more than one division.");
+                }
+            }
+            for (Player player : division.players) {
+                if (!players.add(player)) {
+                    throw new IllegalArgumentException(player + " is in more than one division.");
+                }
+            }
+            playerCount += division.players.length;
+        }
+        List<DivisionTask> tasks = new ArrayList<>(divisions.size());
+        for (Division division : divisions) {
+            tasks.add(new DivisionTask(division));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
+            }
+        });
+        List<Assignment> assignments = new ArrayList<>(tasks.size());
+        for (DivisionTask task : tasks) {
+            assignments.add(task.join());
+        }
+        DIVISIONS_TIMER.stop(start, playerCount);
+        return assignments;
+    }
+
+    /*Writes the assignments into the teams' rosters the way Players.optimizeTeams would: each division's teams are
+    emptied and refilled, every one of its players is marked drafted, and each team is put into the league map with
+    its roster. Runs on the caller's thread, one division at a time*/
+    public static void apply(List<Assignment> assignments, Map<Team, Set<Player>> league) {
+        for (Assignment assignment : assignments) {
+            Division division = assignment.division;
+            for (Team team : division.teams) {
+                Set<Player> roster = league.get(team);
+                if (roster != null) {
+                    roster.clear();
+                }
+                team.playerSet.clear();
+            }
+            for (int index : assignment.order) {
+                Team team = assignment.teamOf(index);
+                if (team != null) {
+                    team.addPlayer(division.players[index]);
+                }
+            }
+            for (Team team : division.teams) {
+                league.put(team, team.playerSet);
+            }
+            for (Player player : division.players) {
+                player.setDrafted();
+            }
+        }
+    }
+
+    /*One division's assignment, worked out from its own copies and arrays only*/
+    private static class DivisionTask extends RecursiveTask<Assignment> {
+        private static final long serialVersionUID = 1L;
+        private final Division division;
+
+        DivisionTask(Division division) {
+            this.division = division;
+        }
+
+        @Override
+        protected Assignment compute() {
+            ScoreIndex scores = new ScoreIndex(division.players);
+            int[] sorted = scores.order();
+            int[] teamOf = new int[sorted.length];
+            Arrays.fill(teamOf, -1);
+            if (division.teams.length != 0) {
+                TeamAssigner assigner = new TeamAssigner(division.teams, true);
+                List<Set<Player>> rosters = new ArrayList<>(division.teams.length);
+                for (int i = 0; i < division.teams.length; i++) {
+                    rosters.add(new TreeSet<>());
+                }
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i > 0 && scores.sameScoreAndName(sorted[i - 1], sorted[i])) {
+                        continue;
+                    }
+                    int lowest = assigner.lowest();
+                    if (rosters.get(lowest).add(division.players[sorted[i]])) {
+                        teamOf[sorted[i]] = lowest;
+                        assigner.credit(lowest, scores.score(sorted[i]));
+                    }
+                }
+            }
+            return new Assignment(division, teamOf, sorted);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.teamtreehouse.model;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/*The team fairness report, used by both the organizer menu and batch jobs. Every team's average height, experience
+and ability score are worked out in a single pass, with the teams split across a ForkJoinPool when there are enough of
+them to be worth it. When the rosters are still being drafted onto, each team is scored inside the task that has it,
+holding that team's own lock, so the teams are never read one after another up front. The teams' ability scores, rounded to whole points, are also counted in a Histogram for the median
+and 90th percentile. The finished report can't be changed, so it can be handed to whoever prints it*/
+public class FairnessReport {
+    private static final int TEAMS_PER_TASK = 512;
+
+    /*One team's line in the report*/
+    public static class TeamScore {
+        private final Team team;
+        private final double averageHeight;
+        private final double experiencePercent;
+        private final int experiencedPlayers;
+        private final int players;
+
+        private TeamScore(Team team) {
+            this.team = team;
+            averageHeight = team.averageHeight();
+            experiencePercent = team.averageExperience() * 100;
+            experiencedPlayers = (int) team.totalExperience();
+            players = team.playerSet.size();
+        }
+
+        public Team getTeam() {
+            return team;
+        }
+
+        public double getAverageHeight() {
+            return averageHeight;
+        }
+
+        public double getExperiencePercent() {
+            return experiencePercent;
+        }
+
+        public int getExperiencedPlayers() {
+            return experiencedPlayers;
+        }
+
+        public int getPlayers() {
+            return players;
+        }
+
+        /*Team average height in inches + percentage of the team that has previous experience*/
+        public double getAbilityScore() {
+            return averageHeight + experiencePercent;
+        }
+    }
+
+    private final List<TeamScore> teamScores;
+    private final List<Team> emptyTeams;
+    private final double highScore;
+    private final double lowScore;
+    private final double fairnessScore;
+    private final Histogram abilityScores = new Histogram();
+
+    private FairnessReport(TeamScore[] scores, double highDiscrepancy) {
+        List<TeamScore> teamScores = new ArrayList<>();
+        List<Team> emptyTeams = new ArrayList<>();
+        double highScore = 0;
+        double lowScore = 1000;
+        for (TeamScore score : scores) {
+            if (score.players == 0) {
+                emptyTeams.add(score.team);
+            } else {
+                teamScores.add(score);
+                abilityScores.add((int) Math.round(score.getAbilityScore()));
+                highScore = Math.max(highScore, score.getAbilityScore());
+                lowScore = Math.min(lowScore, score.getAbilityScore());
+            }
+        }
+        this.teamScores = Collections.unmodifiableList(teamScores);
+        this.emptyTeams = Collections.unmodifiableList(emptyTeams);
+        this.highScore = highScore;
+        this.lowScore = lowScore;
+        fairnessScore = (1 - ((highScore - lowScore) / highDiscrepancy)) * 100;
+    }
+
+    public static FairnessReport compute(Collection<Team> teams, double highDiscrepancy) {
+        return compute(teams, highDiscrepancy, ForkJoinPool.commonPool());
+    }
+
+    /*highDiscrepancy is the largest possible gap between two teams' ability scores (see Players.highDiscrepancy),
+    which the gap between the best and worst teams is measured against*/
+    public static FairnessReport compute(Collection<Team> teams, double highDiscrepancy, ForkJoinPool pool) {
+        return compute(teams, highDiscrepancy, pool, null);
+    }
+
+    /*Like compute(teams, highDiscrepancy, pool), but each team is scored while holding the lock locks gives for it, so
+    rosters other threads are changing can be scored in place without copying them first*/
+    public static FairnessReport compute(Collection<Team> teams, double highDiscrepancy, ForkJoinPool pool,
+                                         Function<Team, ? extends Lock> locks) {
+        Team[] teamArray = teams.toArray(new Team[teams.size()]);
+        TeamScore[] scores = new TeamScore[teamArray.length];
+        ScoreTask task = new ScoreTask(teamArray, scores, locks, 0, teamArray.length);
+        if (teamArray.length <= TEAMS_PER_TASK) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return new FairnessReport(scores, highDiscrepancy);
+    }
+
+    /*Teams with players on them, in the order they were given*/
+    public List<TeamScore> getTeamScores() {
+        return teamScores;
+    }
+
+    /*Teams left out of the report because nobody is on them yet*/
+    public List<Team> getEmptyTeams() {
+        return emptyTeams;
+    }
+
+    public double getHighScore() {
+        return highScore;
+    }
+
+    public double getLowScore() {
+        return lowScore;
+    }
+
+    /*How many teams have each ability score, rounded to whole points. Teams without players aren't counted*/
+    public Histogram getAbilityScores() {
+        Histogram copy = new Histogram();
+        return copy.merge(abilityScores);
+    }
+
+    /*0%-100%, 100% meaning every team has the same ability score*/
+    public double getFairnessScore() {
+        return fairnessScore;
+    }
+
+    /*Prints every team with players on it and then the total fairness score. Teams without players are left out;
+    getEmptyTeams() says which they are*/
+    public void print(PrintStream out) {
+        out.println("Teams:");
+        for (TeamScore team : teamScores) {
+            out.printf("%s (coached by %s)%n" +
+                            "        %.0f\" average height%n" +
+                            "        %.0f%% experience (%d out of %d)%n" +
+                            "        Ability score: %.0f%n",
+                    team.getTeam().toString(), team.getTeam().getCoach(),
+                    team.getAverageHeight(),
+                    team.getExperiencePercent(), team.getExperiencedPlayers(),
+                    team.getPlayers(),
+                    team.getAbilityScore());
+        }
+        if (!abilityScores.isEmpty()) {
+            out.printf("%nMedian ability score: %d, 90th percentile: %d%n", abilityScores.median(),
+                    abilityScores.percentile(90));
+        }
+        out.printf("%nTotal fairness score: %.0f%%%n", fairnessScore);
+    }
+
+    /*Scores one slice of the teams, splitting in half until the slice is small enough. Each task only writes its
+    own part of the scores array, and takes each team's lock (if there are locks) just while scoring that team*/
+    private static class ScoreTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Team[] teams;
+        private final TeamScore[] scores;
+        private final transient Function<Team, ? extends Lock> locks;
+        private final int from;
+        private final int to;
+
+        ScoreTask(Team[] teams, TeamScore[] scores, Function<Team, ? extends Lock> locks, int from, int to) {
+            this.teams = teams;
+            this.scores = scores;
+            this.locks = locks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TEAMS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    scores[i] = score(teams[i]);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreTask(teams, scores, locks, from, middle),
+                        new ScoreTask(teams, scores, locks, middle, to));
+            }
+        }
+
+        private TeamScore score(Team team) {
+            if (locks == null) {
+                return new TeamScore(team);
+            }
+            Lock lock = locks.apply(team);
+            lock.lock();
+            try {
+                return new TeamScore(team);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/*How many times each whole number came up: player heights in inches, or rounded ability scores. Counts are kept in
+one int array indexed by value - lowest(), so adding a value and reading a count never allocate anything. The array
+only grows when a value falls outside every value seen so far.
+
+Histograms of the same kind of value can be merged, so each team (or each slice of the league) can be counted on its
+own thread and the results added up afterwards; heights(teams, pool) does that across a ForkJoinPool. Only counts are
+kept. The players behind a count are found again with players() when someone asks to see them.*/
+public class Histogram {
+    private static final int TEAMS_PER_TASK = 512;
+    /*Room is made for youth heights from the start, so counting a league almost never grows the array*/
+    private static final int SHORTEST = 30;
+    private static final int TALLEST = 60;
+
+    private int offset;
+    private int[] counts = new int[0];
+    private long total;
+
+    /*An empty histogram*/
+    public Histogram() {
+    }
+
+    /*An empty histogram with room for every value from lowest to highest, so counting those never grows the array*/
+    public Histogram(int lowest, int highest) {
+        offset = lowest;
+        counts = new int[highest - lowest + 1];
+    }
+
+    /*Every player's height*/
+    public static Histogram heights(Collection<Player> players) {
+        Histogram histogram = new Histogram(SHORTEST, TALLEST);
+        for (Player player : players) {
+            histogram.add(player.getHeightInInches());
+        }
+        return histogram;
+    }
+
+    /*The heights of the players on every team, each slice of teams counted on its own and then merged*/
+    public static Histogram heights(Collection<Team> teams, ForkJoinPool pool) {
+        return heights(teams, pool, null);
+    }
+
+    /*Like heights(teams, pool), but each roster is counted while holding the lock locks gives for its team, so
+    rosters other threads are changing can be counted in place, each inside the task that has it*/
+    public static Histogram heights(Collection<Team> teams, ForkJoinPool pool, Function<Team, ? extends Lock> locks) {
+        Team[] teamArray = teams.toArray(new Team[teams.size()]);
+        HeightTask task = new HeightTask(teamArray, locks, 0, teamArray.length);
+        return teamArray.length <= TEAMS_PER_TASK ? task.compute() : pool.invoke(task);
+    }
+
+    /*The players whose height is the given value, in the order they were given. Counts alone are enough to print a
+    histogram, so this is only for when someone wants to see who is in one bar*/
+    public static List<Player> players(Collection<Player> players, int height) {
+        List<Player> matching = new ArrayList<>();
+        for (Player player : players) {
+            if (player.getHeightInInches() == height) {
+                matching.add(player);
+            }
+        }
+        return matching;
+    }
+
+    public void add(int value) {
+        add(value, 1);
+    }
+
+    public void add(int value, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (counts.length == 0) {
+            offset = value;
+            counts = new int[1];
+        } else if (value < offset || value >= offset + counts.length) {
+            grow(value);
+        }
+        counts[value - offset] += count;
+        total += count;
+    }
+
+    /*Adds every count in other to this histogram and returns this histogram*/
+    public Histogram merge(Histogram other) {
+        if (other.total == 0) {
+            return this;
+        }
+        int lowest = other.lowest();
+        int highest = other.highest();
+        grow(lowest);
+        grow(highest);
+        for (int value = lowest; value <= highest; value++) {
+            counts[value - offset] += other.counts[value - other.offset];
+        }
+        total += other.total;
+        return this;
+    }
+
+    private void grow(int value) {
+        if (counts.length == 0) {
+            offset = value;
+            counts = new int[1];
+            return;
+        }
+        int lowest = Math.min(offset, value);
+        int highest = Math.max(offset + counts.length - 1, value);
+        if (lowest == offset && highest == offset + counts.length - 1) {
+            return;
+        }
+        int[] grown = new int[highest - lowest + 1];
+        System.arraycopy(counts, 0, grown, offset - lowest, counts.length);
+        counts = grown;
+        offset = lowest;
+    }
+
+    /*How many times value came up*/
+    public int count(int value) {
+        int i = value - offset;
+        return i < 0 || i >= counts.length ? 0 : counts[i];
+    }
+
+    /*How many values were counted in all*/
+    public long total() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /*The smallest value counted at least once. Only meaningful if the histogram isn't empty*/
+    public int lowest() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                return offset + i;
+            }
+        }
+        return offset;
+    }
+
+    /*The largest value counted at least once. Only meaningful if the histogram isn't empty*/
+    public int highest() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return offset + i;
+            }
+        }
+        return offset;
+    }
+
+    /*The smallest value that at least percent% of the counted values are at or below (the nearest rank percentile).
+    percentile(50) is the median*/
+    public int percentile(double percent) {
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return offset + i;
+            }
+        }
+        return highest();
+    }
+
+    public int median() {
+        return percentile(50);
+    }
+
+    public double average() {
+        if (total == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += (double) (offset + i) * counts[i];
+        }
+        return sum / total;
+    }
+
+    /*Counts the heights on one slice of the teams, splitting in half until the slice is small enough, and merges the
+    halves on the way back up. Each roster is counted under its team's lock, if there are locks*/
+    private static class HeightTask extends RecursiveTask<Histogram> {
+        private static final long serialVersionUID = 1L;
+        private final Team[] teams;
+        private final transient Function<Team, ? extends Lock> locks;
+        private final int from;
+        private final int to;
+
+        HeightTask(Team[] teams, Function<Team, ? extends Lock> locks, int from, int to) {
+            this.teams = teams;
+            this.locks = locks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Histogram compute() {
+            if (to - from <= TEAMS_PER_TASK) {
+                Histogram histogram = new Histogram(SHORTEST, TALLEST);
+                for (int i = from; i < to; i++) {
+                    count(teams[i], histogram);
+                }
+                return histogram;
+            }
+            int middle = (from + to) >>> 1;
+            HeightTask right = new HeightTask(teams, locks, middle, to);
+            right.fork();
+            Histogram left = new HeightTask(teams, locks, from, middle).compute();
+            return left.merge(right.join());
+        }
+
+        private void count(Team team, Histogram histogram) {
+            Lock lock = locks == null ? null : locks.apply(team);
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                for (Player player : team.playerSet) {
+                    histogram.add(player.getHeightInInches());
+                }
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+
+/*Keeps an already optimized league fair one player at a time, instead of running Players.optimizeTeams again and
+rebuilding every roster. A new player goes to the team with the lowest total ability score that still has room, the same
+team the optimizer would have picked; if every team is full the player is left undrafted. If the gap between the highest
+and lowest team totals is then wider than the tolerance, up to two swaps between the highest and lowest teams pull them
+back together. Only the teams involved are touched.
+
+Team totals and sizes are kept in three heaps (lowest first, highest first, and lowest first with the full teams pushed
+to the end), so a change costs O(log t) plus the swap search, which only looks at the two rosters involved. Rosters
+changed some other way have to be reported with refresh() for the heaps to stay right.*/
+public class IncrementalBalancer {
+    private static final int MAX_SWAPS = 2;
+    private static final double EPSILON = 1e-9;
+
+    /*A player going onto a team. from is null for a player who wasn't on a team before*/
+    public static class Move {
+        private final Player player;
+        private final Team from;
+        private final Team to;
+
+        private Move(Player player, Team from, Team to) {
+            this.player = player;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Player getPlayer() {
+            return player;
+        }
+
+        public Team getFrom() {
+            return from;
+        }
+
+        public Team getTo() {
+            return to;
+        }
+    }
+
+    private final Team[] teams;
+    private final Map<Team, Integer> indexes = new HashMap<>();
+    private final double tolerance;
+    private final int maxRosterSize;
+    private final TeamAssigner lowest;
+    private final TeamAssigner highest;
+    private final TeamAssigner open;
+
+    /*tolerance is the widest gap between the highest and lowest team totals (in ability score points) that is left
+    alone. No roster is made bigger than maxRosterSize*/
+    public IncrementalBalancer(Collection<Team> teams, double tolerance, int maxRosterSize) {
+        this.teams = teams.toArray(new Team[teams.size()]);
+        this.tolerance = tolerance;
+        this.maxRosterSize = maxRosterSize;
+        for (int i = 0; i < this.teams.length; i++) {
+            indexes.put(this.teams[i], i);
+        }
+        lowest = new TeamAssigner(this.teams);
+        highest = new TeamAssigner(this.teams, true);
+        open = new TeamAssigner(this.teams, true);
+        for (int i = 0; i < this.teams.length; i++) {
+            refreshHighest(i);
+            refreshOpen(i);
+        }
+    }
+
+    /*Puts a new player on the lowest team with room, then swaps players between the highest and lowest teams while
+    the gap is wider than the tolerance. Returns every move made, the new player's first; empty if there are no
+    teams, every team is full or the player couldn't be added (someone with the same name is on the lowest team)*/
+    public List<Move> place(Player player) {
+        List<Move> moves = new ArrayList<>();
+        if (teams.length == 0) {
+            return moves;
+        }
+        int team = open.lowest();
+        if (!fits(team, 0, 1) || !teams[team].addPlayer(player)) {
+            return moves;
+        }
+        refresh(team);
+        moves.add(new Move(player, null, teams[team]));
+        for (int i = 0; i < MAX_SWAPS && spread() > tolerance + EPSILON; i++) {
+            if (!swap(moves)) {
+                break;
+            }
+        }
+        return moves;
+    }
+
+    /*Gap between the highest and lowest team totals*/
+    public double spread() {
+        if (teams.length == 0) {
+            return 0;
+        }
+        return lowest.total(highest.lowest()) - lowest.total(lowest.lowest());
+    }
+
+    /*Re-reads a team's roster after it was changed outside of this balancer*/
+    public void refresh(Team team) {
+        Integer index = indexes.get(team);
+        if (index != null) {
+            refresh(index);
+        }
+    }
+
+    private void refresh(int index) {
+        lowest.refresh(index);
+        refreshHighest(index);
+        refreshOpen(index);
+    }
+
+    /*The highest-first heap is a TeamAssigner fed negated totals and sizes, so its lowest team is the highest one*/
+    private void refreshHighest(int index) {
+        highest.update(index, -lowest.total(index), -lowest.rosterSize(index));
+    }
+
+    /*The open heap is a TeamAssigner where a full team's total is infinite, so it is only the lowest when every team is
+    full*/
+    private void refreshOpen(int index) {
+        open.update(index, fits(index, 0, 1) ? lowest.total(index) : Double.POSITIVE_INFINITY,
+                lowest.rosterSize(index));
+    }
+
+    /*Whether a team is still within maxRosterSize after losing and gaining this many players*/
+    private boolean fits(int index, int leaving, int joining) {
+        return lowest.rosterSize(index) - leaving + joining <= maxRosterSize;
+    }
+
+    /*Makes the one swap between the highest and lowest teams that brings their totals closest together. A swap is
+    one for one, so it can't fill a team, but a team already over maxRosterSize isn't swapped with. Returns false if
+    no swap narrows the gap*/
+    private boolean swap(List<Move> moves) {
+        int high = highest.lowest();
+        int low = lowest.lowest();
+        double gap = lowest.total(high) - lowest.total(low);
+        Player bestHigh = null;
+        Player bestLow = null;
+        double bestGap = gap;
+        for (Player fromHigh : teams[high].playerSet) {
+            for (Player fromLow : teams[low].playerSet) {
+                double difference = fromHigh.abilityScore() - fromLow.abilityScore();
+                double newGap = Math.abs(gap - 2 * difference);
+                if (difference > 0 && newGap < bestGap - EPSILON
+                        && !teams[high].playerSet.contains(fromLow) && !teams[low].playerSet.contains(fromHigh)) {
+                    bestHigh = fromHigh;
+                    bestLow = fromLow;
+                    bestGap = newGap;
+                }
+            }
+        }
+        if (bestHigh == null || !fits(high, 1, 1) || !fits(low, 1, 1)) {
+            return false;
+        }
+        teams[high].removePlayer(bestHigh);
+        teams[low].removePlayer(bestLow);
+        teams[high].addPlayer(bestLow);
+        teams[low].addPlayer(bestHigh);
+        refresh(high);
+        refresh(low);
+        moves.add(new Move(bestHigh, teams[high], teams[low]));
+        moves.add(new Move(bestLow, teams[low], teams[high]));
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/*Lookups the menus need over and over, kept up to date instead of found by walking the whole league each time:
+    -teams by name
+    -where a player is in the player list (every position, when several players share a name)
+    -players by the beginning of their first or last name
+    -which players are still free agents
+    -everyone sorted by ability score (a ScoreIndex), for optimizing and the fairness report
+The index works on the same Player[] the menus use, by position in that array, so a player's number in a listing is
+still their position + 1. Every change to the player list or to who is drafted has to go through replace(), draft()
+and undraft() (or be followed by rebuildDrafted()) for the index to stay right.
+
+The maps and sets are concurrent ones, so draft() and undraft() can be called from several threads at once (as
+LeagueService does) while others search; everything else has to be called by one thread at a time.*/
+public class LeagueIndex {
+    private Player[] players;
+    private final Map<String, Team> teamsByName = new ConcurrentHashMap<>();
+    private final Map<Player, NavigableSet<Integer>> positions = new ConcurrentHashMap<>();
+    private final NavigableMap<String, NavigableSet<Integer>> names = new ConcurrentSkipListMap<>();
+    private final NavigableSet<Integer> undrafted = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Integer> everyone = new ConcurrentSkipListSet<>();
+    private ScoreIndex scores;
+
+    public LeagueIndex(Player[] players, Collection<Team> teams) {
+        this.players = players;
+        scores = new ScoreIndex(players);
+        for (Team team : teams) {
+            addTeam(team);
+        }
+        for (int i = 0; i < players.length; i++) {
+            addPlayer(i);
+            everyone.add(i);
+        }
+    }
+
+    /*Switches to a longer copy of the player list and indexes the players past the old end. Everyone already indexed
+    keeps their position, so only the new players are added; the score order is sorted again when next asked for*/
+    public void append(Player[] grown) {
+        int start = players.length;
+        players = grown;
+        scores = new ScoreIndex(grown);
+        for (int i = start; i < grown.length; i++) {
+            addPlayer(i);
+            everyone.add(i);
+        }
+    }
+
+    public void addTeam(Team team) {
+        teamsByName.put(team.getName(), team);
+    }
+
+    public boolean containsTeam(String name) {
+        return teamsByName.containsKey(name);
+    }
+
+    public Team team(String name) {
+        return teamsByName.get(name);
+    }
+
+    /*Position of the player in the player list, or -1 if neither they nor anyone equal to them is in it. When
+    several players share a name, the position holding this very object wins over the first one*/
+    public int indexOf(Player player) {
+        NavigableSet<Integer> equal = positions.get(player);
+        if (equal == null) {
+            return -1;
+        }
+        int first = -1;
+        for (int position : equal) {
+            if (players[position] == player) {
+                return position;
+            } else if (first < 0) {
+                first = position;
+            }
+        }
+        return first;
+    }
+
+    /*Puts a different player at a position in the player list*/
+    public void replace(int position, Player player) {
+        removePlayer(position);
+        scores.remove(position);
+        players[position] = player;
+        player.setDirty();
+        scores.add(position);
+        addPlayer(position);
+    }
+
+    /*The player list sorted by ability score. Sorted the first time it's asked for, then kept sorted by replace()*/
+    public ScoreIndex scores() {
+        return scores;
+    }
+
+    public void draft(int position) {
+        players[position].setDrafted();
+        undrafted.remove(position);
+    }
+
+    public void undraft(int position) {
+        players[position].notDrafted();
+        undrafted.add(position);
+    }
+
+    /*Re-reads every player's drafted flag, for changes that draft the whole league at once like optimizeTeams*/
+    public void rebuildDrafted() {
+        undrafted.clear();
+        for (int i = 0; i < players.length; i++) {
+            if (!players[i].isDrafted()) {
+                undrafted.add(i);
+            }
+        }
+    }
+
+    /*Positions of players who are not on a team, in player list order*/
+    public NavigableSet<Integer> undrafted() {
+        return Collections.unmodifiableNavigableSet(undrafted);
+    }
+
+    /*Positions of players whose first or last name starts with the given text (ignoring case), in player list
+    order, optionally only the free agents. An empty search matches everyone without building a new set*/
+    public NavigableSet<Integer> search(String prefix, boolean freeAgentsOnly) {
+        String key = prefix.trim().toLowerCase();
+        if (key.isEmpty()) {
+            return Collections.unmodifiableNavigableSet(freeAgentsOnly ? undrafted : everyone);
+        }
+        NavigableSet<Integer> matches = new TreeSet<>();
+        for (NavigableSet<Integer> positions : names.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            for (int position : positions) {
+                if (!freeAgentsOnly || undrafted.contains(position)) {
+                    matches.add(position);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void addPlayer(int position) {
+        Player player = players[position];
+        positions.computeIfAbsent(player, equal -> new ConcurrentSkipListSet<>()).add(position);
+        names.computeIfAbsent(player.getFirstName().toLowerCase(), name -> new ConcurrentSkipListSet<>()).add(position);
+        names.computeIfAbsent(player.getLastName().toLowerCase(), name -> new ConcurrentSkipListSet<>()).add(position);
+        if (!player.isDrafted()) {
+            undrafted.add(position);
+        }
+    }
+
+    private void removePlayer(int position) {
+        Player player = players[position];
+        positions.computeIfPresent(player, (equal, at) -> at.remove(position) && at.isEmpty() ? null : at);
+        removeName(player.getFirstName().toLowerCase(), position);
+        removeName(player.getLastName().toLowerCase(), position);
+        undrafted.remove(position);
+    }
+
+    private void removeName(String name, int position) {
+        NavigableSet<Integer> withName = names.get(name);
+        if (withName != null) {
+            withName.remove(position);
+            if (withName.isEmpty()) {
+                names.remove(name);
+            }
+        }
+    }
+}
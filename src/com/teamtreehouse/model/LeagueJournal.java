@@ -0,0 +1,388 @@
+package com.teamtreehouse.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/*An append-only log of every change made to the league since the last snapshot, so a crash loses nothing even if the
+league was never saved. Each change is one small record:
+    [payload length][sequence number][record type][payload][CRC32]
+Records are numbered in order and the snapshot remembers the last number it includes, so on startup only the
+records after the snapshot are replayed on top of it.
+
+Appending never waits for the disk. Records are collected in memory and a background thread writes whatever has
+piled up in one go and forces it to disk (a group commit), so many quick changes cost one fsync. sync() waits until
+everything appended so far is on disk; the menus call it before telling the user a change was made, so a change
+that was confirmed is never lost. After the league is saved as a snapshot, compact() empties the journal.*/
+public class LeagueJournal implements Closeable {
+    public static final String FILE_NAME = "league.journal";
+
+    private static final byte TEAM_CREATED = 1;
+    private static final byte PLAYER_WAITLISTED = 2;
+    private static final byte PLAYER_REPLACED = 3;
+    private static final byte PLAYER_DRAFTED = 4;
+    private static final byte PLAYER_UNDRAFTED = 5;
+    private static final byte TEAMS_OPTIMIZED = 6;
+    private static final byte PLAYERS_IMPORTED = 7;
+    private static final byte WAITING_LIST_ORDER = 8;
+
+    /*What a replayed record does to the league. Positions are positions in the player list*/
+    public interface Listener {
+        void teamCreated(String name, String coach);
+
+        void playerWaitlisted(Player player);
+
+        /*The player at the position was removed and replaced with the next player on the waiting list*/
+        void playerReplaced(int position);
+
+        void playerDrafted(int position, String team);
+
+        /*position is -1 if the player wasn't found in the player list*/
+        void playerUndrafted(int position, Player player, String team);
+
+        /*Every team's new roster, by team name*/
+        void teamsOptimized(Map<String, int[]> rosters);
+
+        /*New players added to the end of the player list, in order*/
+        void playersImported(List<Player> players);
+
+        /*The waiting list was switched to priority order, or back to first in, first out*/
+        void waitingListOrdered(boolean priority);
+    }
+
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final Object channelLock = new Object();
+    private final Thread writer;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long sequence;
+    private long durableSequence;
+    private long size;
+    private IOException failure;
+    private boolean closed;
+
+    private LeagueJournal(FileChannel channel, long sequence, long size) {
+        this.channel = channel;
+        this.sequence = sequence;
+        this.durableSequence = sequence;
+        this.size = size;
+        writer = new Thread(this::writeLoop, "league-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /*Opens (or creates) the journal and replays every record numbered after snapshotSequence through the listener.
+    A record cut off by a crash, or one that fails its checksum, ends the journal; it and anything after it are
+    cut off the file*/
+    public static LeagueJournal open(Path path, long snapshotSequence, Listener listener) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long sequence = snapshotSequence;
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+                long recordSequence;
+                byte type;
+                byte[] payload;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    if (length < 0 || length > channel.size()) {
+                        break;
+                    }
+                    recordSequence = in.readLong();
+                    type = in.readByte();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (checksum != checksum(recordSequence, type, payload)) {
+                    break;
+                }
+                if (recordSequence > snapshotSequence) {
+                    replay(type, payload, listener);
+                }
+                sequence = Math.max(sequence, recordSequence);
+                good += 4 + 8 + 1 + length + 4;
+            }
+        }
+        if (channel.size() > good) {
+            channel.truncate(good);
+            channel.force(false);
+        }
+        channel.position(good);
+        return new LeagueJournal(channel, sequence, good);
+    }
+
+    private static void replay(byte type, byte[] payload, Listener listener) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+            case TEAM_CREATED:
+                listener.teamCreated(in.readUTF(), in.readUTF());
+                break;
+            case PLAYER_WAITLISTED:
+                listener.playerWaitlisted(readPlayer(in));
+                break;
+            case PLAYER_REPLACED:
+                listener.playerReplaced(in.readInt());
+                break;
+            case PLAYER_DRAFTED:
+                listener.playerDrafted(in.readInt(), in.readUTF());
+                break;
+            case PLAYER_UNDRAFTED:
+                listener.playerUndrafted(in.readInt(), readPlayer(in), in.readUTF());
+                break;
+            case TEAMS_OPTIMIZED:
+                Map<String, int[]> rosters = new LinkedHashMap<>();
+                int teams = in.readInt();
+                for (int i = 0; i < teams; i++) {
+                    String name = in.readUTF();
+                    int[] roster = new int[in.readInt()];
+                    for (int j = 0; j < roster.length; j++) {
+                        roster[j] = in.readInt();
+                    }
+                    rosters.put(name, roster);
+                }
+                listener.teamsOptimized(rosters);
+                break;
+            case PLAYERS_IMPORTED:
+                List<Player> players = new ArrayList<>();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    players.add(readPlayer(in));
+                }
+                listener.playersImported(players);
+                break;
+            case WAITING_LIST_ORDER:
+                listener.waitingListOrdered(in.readBoolean());
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type + ".");
+        }
+    }
+
+    public long teamCreated(String name, String coach) {
+        return append(TEAM_CREATED, out -> {
+            out.writeUTF(name);
+            out.writeUTF(coach);
+        });
+    }
+
+    public long playerWaitlisted(Player player) {
+        return append(PLAYER_WAITLISTED, out -> writePlayer(out, player));
+    }
+
+    public long playerReplaced(int position) {
+        return append(PLAYER_REPLACED, out -> out.writeInt(position));
+    }
+
+    public long playerDrafted(int position, Team team) {
+        return append(PLAYER_DRAFTED, out -> {
+            out.writeInt(position);
+            out.writeUTF(team.getName());
+        });
+    }
+
+    public long playerUndrafted(int position, Player player, Team team) {
+        return append(PLAYER_UNDRAFTED, out -> {
+            out.writeInt(position);
+            writePlayer(out, player);
+            out.writeUTF(team.getName());
+        });
+    }
+
+    /*rosters holds every team's roster as positions in the player list*/
+    public long teamsOptimized(Map<Team, int[]> rosters) {
+        return append(TEAMS_OPTIMIZED, out -> {
+            out.writeInt(rosters.size());
+            for (Map.Entry<Team, int[]> roster : rosters.entrySet()) {
+                out.writeUTF(roster.getKey().getName());
+                out.writeInt(roster.getValue().length);
+                for (int position : roster.getValue()) {
+                    out.writeInt(position);
+                }
+            }
+        });
+    }
+
+    /*One batch of players from PlayerImporter, added to the end of the player list*/
+    public long playersImported(List<Player> players) {
+        return append(PLAYERS_IMPORTED, out -> {
+            out.writeInt(players.size());
+            for (Player player : players) {
+                writePlayer(out, player);
+            }
+        });
+    }
+
+    public long waitingListOrdered(boolean priority) {
+        return append(WAITING_LIST_ORDER, out -> out.writeBoolean(priority));
+    }
+
+    /*Number of the last record appended. A snapshot saved now includes every record up to here*/
+    public long sequence() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    /*Bytes in the journal file, not counting records still waiting to be written*/
+    public long size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /*The error that stopped the journal from writing, or null if it is working*/
+    public IOException getFailure() {
+        synchronized (lock) {
+            return failure;
+        }
+    }
+
+    /*Waits until every record appended so far is on disk*/
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = sequence;
+            while (durableSequence < target && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal.");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /*Empties the journal once a snapshot containing every record up to snapshotSequence has been saved. If more
+    records were appended since, the journal is left alone and can be compacted after the next save*/
+    public void compact(long snapshotSequence) throws IOException {
+        sync();
+        synchronized (channelLock) {
+            synchronized (lock) {
+                if (sequence != snapshotSequence || pending.size() != 0) {
+                    return;
+                }
+                size = 0;
+            }
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private long append(byte type, Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            payload.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        synchronized (lock) {
+            long recordSequence = ++sequence;
+            ByteBuffer record = ByteBuffer.allocate(4 + 8 + 1 + body.length + 4);
+            record.putInt(body.length).putLong(recordSequence).put(type).put(body)
+                    .putInt(checksum(recordSequence, type, body));
+            pending.write(record.array(), 0, record.capacity());
+            lock.notifyAll();
+            return recordSequence;
+        }
+    }
+
+    /*The background writer: takes everything appended since its last write, writes it, forces it to disk and lets
+    anyone waiting in sync() know how far the journal is now durable*/
+    private void writeLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSequence;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                batchSequence = sequence;
+                pending = new ByteArrayOutputStream();
+            }
+            try {
+                synchronized (channelLock) {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+                synchronized (lock) {
+                    size += batch.length;
+                    durableSequence = batchSequence;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private static int checksum(long recordSequence, byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(9).putLong(recordSequence).put(type).array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void writePlayer(DataOutputStream out, Player player) throws IOException {
+        out.writeUTF(player.getFirstName());
+        out.writeUTF(player.getLastName());
+        out.writeInt(player.getHeightInInches());
+        out.writeBoolean(player.isPreviousExperience());
+    }
+
+    private static Player readPlayer(DataInputStream in) throws IOException {
+        return new Player(in.readUTF(), in.readUTF(), in.readInt(), in.readBoolean(), false);
+    }
+}
@@ -0,0 +1,167 @@
+package com.teamtreehouse.model;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*Lets many organizers and coaches use one league at once. Each connection to a local TCP port (telnet or nc will do)
+gets its own Menu session on the same LeagueService, so everyone sees everyone else's changes straight away and there
+is only one program saving the league, instead of one per console each overwriting the others' files.
+
+Every session runs on its own virtual thread when the Java running the program has them (21 and later), so thousands
+of coaches can sit at a menu prompt while costing little more than their connection. On older Javas the sessions run
+on ordinary threads with small stacks instead. The virtual thread executor is looked up by reflection so the program
+still compiles and runs on the older ones.
+
+Only connections from this machine are accepted. Sessions don't save the league when they quit; the server saves it
+once when it stops, and the journal keeps every change in between.*/
+public class LeagueServer implements Closeable {
+    public static final int DEFAULT_PORT = 4700;
+    private static final long SESSION_STACK_BYTES = 256 * 1024;
+    /*Menu input is a line at a time and output a screen at a time, so idle sessions keep small buffers*/
+    private static final int INPUT_BUFFER_CHARS = 256;
+    private static final int OUTPUT_BUFFER_BYTES = 2048;
+    private static final Metrics.Counter SESSIONS = Metrics.counter("server.sessions");
+
+    private final LeagueService league;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = sessionExecutor();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    /*Listens on the given port of the loopback address. Port 0 picks any free port (see getPort())*/
+    public LeagueServer(LeagueService league, int port) throws IOException {
+        this.league = league;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        acceptor = new Thread(this::accept, "league-server");
+    }
+
+    /*Runs the server from the command line until the program is stopped, saving the league on the way out*/
+    public static void serve(int port) throws IOException {
+        LeagueService league = new Menu().load();
+        LeagueServer server = new LeagueServer(league, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                league.save();
+                System.out.println("Teams successfully saved!");
+            } catch (IOException e) {
+                System.out.println("Problem saving teams. Your changes are still kept in the journal.");
+            }
+        }));
+        server.start();
+        System.out.printf("Serving the league on localhost:%d. Press Ctrl+C to stop.%n", server.getPort());
+        server.join();
+    }
+
+    public void start() {
+        acceptor.start();
+    }
+
+    /*Waits until the server stops accepting connections*/
+    public void join() {
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /*Connections whose sessions haven't ended yet*/
+    public int sessionCount() {
+        return connections.size();
+    }
+
+    /*Stops accepting connections and hangs up on every session. The league itself is left as it is*/
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+        sessions.shutdown();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            Socket connection;
+            try {
+                connection = serverSocket.accept();
+            } catch (IOException e) {
+                break;
+            }
+            connections.add(connection);
+            SESSIONS.increment();
+            try {
+                sessions.execute(() -> session(connection));
+            } catch (RuntimeException e) {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private void session(Socket connection) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                    StandardCharsets.UTF_8), INPUT_BUFFER_CHARS);
+            PrintStream out = new PrintStream(new BufferedOutputStream(connection.getOutputStream(),
+                    OUTPUT_BUFFER_BYTES), true, StandardCharsets.UTF_8.name());
+            new Menu(league, in, out).runSession();
+        } catch (IOException | RuntimeException e) {
+            // The connection dropped; only this session ends
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+    private void closeQuietly(Socket connection) {
+        connections.remove(connection);
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    /*A virtual thread per session if this Java has them, otherwise an ordinary daemon thread with a small stack*/
+    private static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger number = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(null, runnable, "league-session-" + number.incrementAndGet(),
+                        SESSION_STACK_BYTES);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /*True if sessions run on virtual threads*/
+    public boolean isVirtual() {
+        return !(sessions instanceof ThreadPoolExecutor);
+    }
+}
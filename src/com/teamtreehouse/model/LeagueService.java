@@ -0,0 +1,641 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*The league everyone works on - the player list, the teams with their rosters and the waiting list - along with every
+change that can be made to it, safe to use from several threads so more than one organizer or coach can work at once.
+
+Changes to one team (drafting a player onto it, taking one off, reading its roster) lock only that team's stripe, so
+work on different teams goes on side by side. Who a player belongs to is claimed in owners with a compare-and-set
+before any roster is touched, so two organizers drafting the same player at the same moment can't both get them.
+Changes to the whole league (a new team, optimizing, importing, replacing a player, saving) take the league lock for
+writing, which waits for the one-team changes to finish and keeps new ones out; one-team changes hold it for reading.
+
+Each change is journaled (see LeagueJournal) while its locks are held, so replaying the journal gives the same
+league no matter how the threads were interleaved.*/
+public class LeagueService {
+    public static final int MAX_PLAYERS = 11;
+    private static final int STRIPES = 16;
+    private static final double REBALANCE_TOLERANCE = 10;
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("save");
+    private static final Metrics.Timer FAIRNESS_TIMER = Metrics.timer("fairnessReport");
+
+    /*How a draft went*/
+    public enum Draft {
+        DRAFTED,
+        /*The player is already on a team*/
+        TAKEN,
+        /*The roster already has MAX_PLAYERS players*/
+        FULL,
+        /*Someone with the same name is already on the roster*/
+        SAME_NAME
+    }
+
+    private final ReentrantReadWriteLock leagueLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ConcurrentNavigableMap<Team, Set<Player>> teams = new ConcurrentSkipListMap<>();
+    private volatile WaitingList waitingList;
+    private volatile Player[] players;
+    private volatile LeagueIndex index;
+    private volatile AtomicReferenceArray<Team> owners;
+    private volatile IncrementalBalancer balancer;
+    private volatile LeagueJournal journal;
+
+    public LeagueService(Player[] players, Map<Team, Set<Player>> teams, Queue<Player> waitingList) {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        for (Team team : teams.keySet()) {
+            this.teams.put(team, team.playerSet);
+        }
+        this.waitingList = new WaitingList(waitingList,
+                waitingList instanceof WaitingList && ((WaitingList) waitingList).isPriority());
+        this.players = players;
+        index = new LeagueIndex(players, this.teams.keySet());
+        rebuildOwners();
+    }
+
+    public Player[] players() {
+        return players;
+    }
+
+    /*The teams in name order. The set follows new teams as they are made*/
+    public NavigableSet<Team> teams() {
+        return teams.keySet();
+    }
+
+    public Team team(String name) {
+        return index.team(name);
+    }
+
+    public boolean containsTeam(String name) {
+        return index.containsTeam(name);
+    }
+
+    public int maxTeams() {
+        return (int) Math.ceil(players.length / (double) MAX_PLAYERS);
+    }
+
+    /*Position of the player in the player list, or -1 if they aren't in it*/
+    public int indexOf(Player player) {
+        return index.indexOf(player);
+    }
+
+    /*See LeagueIndex.search*/
+    public NavigableSet<Integer> search(String prefix, boolean freeAgentsOnly) {
+        return index.search(prefix, freeAgentsOnly);
+    }
+
+    /*The player who has waited longest, or null if no one is waiting*/
+    public Player nextWaiting() {
+        return waitingList.peek();
+    }
+
+    /*The player on the waiting list who would replace the player at this position, or null*/
+    public Player nextWaiting(int position) {
+        return waitingList.peek(players[position].abilityScore());
+    }
+
+    /*True if players are taken off the waiting list by how well they fill the gap left by the player they replace,
+    false if they are taken first come, first served*/
+    public boolean isWaitingListPriority() {
+        return waitingList.isPriority();
+    }
+
+    /*Switches the waiting list between priority order and first come, first served. Everyone waiting keeps their
+    place in line*/
+    public void setWaitingListPriority(boolean priority) {
+        leagueLock.writeLock().lock();
+        try {
+            if (priority != waitingList.isPriority()) {
+                if (journal != null) {
+                    journal.waitingListOrdered(priority);
+                }
+                waitingList = new WaitingList(waitingList, priority);
+            }
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*A copy of the team's roster, alphabetized*/
+    public List<Player> roster(Team team) {
+        leagueLock.readLock().lock();
+        try {
+            ReentrantLock stripe = stripe(team);
+            stripe.lock();
+            try {
+                Set<Player> roster = teams.get(team);
+                return roster == null ? new ArrayList<>() : new ArrayList<>(roster);
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            leagueLock.readLock().unlock();
+        }
+    }
+
+    /*Makes a new team. Returns null if there is already a team with that name or the league has all the teams its
+    players can fill*/
+    public Team createTeam(String name, String coach) {
+        leagueLock.writeLock().lock();
+        try {
+            if (teams.size() >= maxTeams() || index.containsTeam(name)) {
+                return null;
+            }
+            Team team = new Team(name, coach);
+            if (journal != null) {
+                journal.teamCreated(name, coach);
+            }
+            teams.put(team, team.playerSet);
+            index.addTeam(team);
+            balancer = null;
+            return team;
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*The waiting list itself takes players without locking. Only while there is a journal are its record and the
+    player added together, synchronized on the journal, so the journal has the players in the waiting list's order*/
+    public void waitlist(Player player) {
+        leagueLock.readLock().lock();
+        try {
+            LeagueJournal current = journal;
+            if (current == null) {
+                waitingList.add(player);
+                return;
+            }
+            synchronized (current) {
+                current.playerWaitlisted(player);
+                waitingList.add(player);
+            }
+        } finally {
+            leagueLock.readLock().unlock();
+        }
+    }
+
+    /*Moves the player at this position in the player list from the free agents onto the team's roster, all at once:
+    no one else can draft them in between, and a draft that fails leaves them a free agent*/
+    public Draft draft(int position, Team team) {
+        leagueLock.readLock().lock();
+        try {
+            Set<Player> roster = teams.get(team);
+            if (roster == null) {
+                throw new IllegalArgumentException("There is no team called " + team.getName() + ".");
+            }
+            if (!owners.compareAndSet(position, null, team)) {
+                return Draft.TAKEN;
+            }
+            ReentrantLock stripe = stripe(team);
+            stripe.lock();
+            try {
+                Player player = players[position];
+                Draft result = Draft.DRAFTED;
+                if (roster.size() >= MAX_PLAYERS) {
+                    result = Draft.FULL;
+                } else if (roster.contains(player)) {
+                    result = Draft.SAME_NAME;
+                }
+                if (result != Draft.DRAFTED) {
+                    owners.set(position, null);
+                    return result;
+                }
+                if (journal != null) {
+                    journal.playerDrafted(position, team);
+                }
+                team.addPlayer(player);
+                index.draft(position);
+                refreshBalancer(team);
+                return result;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            leagueLock.readLock().unlock();
+        }
+    }
+
+    /*Takes the player off the team's roster and makes them a free agent again. Returns false if they weren't on it*/
+    public boolean undraft(Player player, Team team) {
+        leagueLock.readLock().lock();
+        try {
+            ReentrantLock stripe = stripe(team);
+            stripe.lock();
+            try {
+                Set<Player> roster = teams.get(team);
+                if (roster == null || !roster.contains(player)) {
+                    return false;
+                }
+                int position = index.indexOf(player);
+                if (journal != null) {
+                    journal.playerUndrafted(position, player, team);
+                }
+                team.removePlayer(player);
+                if (position >= 0) {
+                    index.undraft(position);
+                    owners.compareAndSet(position, team, null);
+                }
+                refreshBalancer(team);
+                return true;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            leagueLock.readLock().unlock();
+        }
+    }
+
+    /*Takes a free agent out of the league and puts a player from the waiting list in their place: the next in line,
+    or in priority order the one whose ability score is closest to theirs. If that
+    leaves no free agents but the new player, the new player is placed on a team right away with IncrementalBalancer,
+    instead of waiting for the next optimize to rebuild every roster. Returns the moves that placement made (empty
+    if there were none), or null if the player is on a team or no one is waiting*/
+    public List<IncrementalBalancer.Move> replace(int position) {
+        leagueLock.writeLock().lock();
+        try {
+            if (owners.get(position) != null || waitingList.isEmpty()) {
+                return null;
+            }
+            NavigableSet<Integer> undrafted = index.undrafted();
+            boolean fullyDrafted = undrafted.first() == position && undrafted.last() == position;
+            if (journal != null) {
+                journal.playerReplaced(position);
+            }
+            index.replace(position, waitingList.poll(players[position].abilityScore()));
+            if (fullyDrafted && !teams.isEmpty()) {
+                return place(position);
+            }
+            return new ArrayList<>();
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*Any swaps made to keep the teams even are journaled as the player leaving one team and joining the other. A
+    draft is only journaled with a position the index found, since replay looks the player up by it*/
+    private List<IncrementalBalancer.Move> place(int position) {
+        if (balancer == null) {
+            balancer = new IncrementalBalancer(teams.keySet(), REBALANCE_TOLERANCE, MAX_PLAYERS);
+        }
+        List<IncrementalBalancer.Move> moves = balancer.place(players[position]);
+        for (IncrementalBalancer.Move move : moves) {
+            int moved = move.getFrom() == null ? position : index.indexOf(move.getPlayer());
+            assert moved >= 0 : move.getPlayer() + " is on " + move.getFrom() + " but not in the player list";
+            if (move.getFrom() == null) {
+                index.draft(position);
+            } else if (journal != null) {
+                journal.playerUndrafted(moved, move.getPlayer(), move.getFrom());
+            }
+            if (moved >= 0) {
+                if (journal != null) {
+                    journal.playerDrafted(moved, move.getTo());
+                }
+                owners.set(moved, move.getTo());
+            }
+        }
+        return moves;
+    }
+
+    /*Rebuilds every roster with Players.optimizeTeams. Returns how much the refiner narrowed the gap*/
+    public double optimize(TeamRefiner refiner) {
+        leagueLock.writeLock().lock();
+        try {
+            double narrowed = Players.optimizeTeams(index.scores(), teams, refiner);
+            rostersRebuilt();
+            return narrowed;
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*Rebuilds every roster with BalancedOptimizer. Returns the players who didn't fit*/
+    public List<Player> balance(BalanceOptions options) {
+        leagueLock.writeLock().lock();
+        try {
+            List<Player> unplaced = BalancedOptimizer.optimize(players, teams, options);
+            rostersRebuilt();
+            return unplaced;
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    private void rostersRebuilt() {
+        index.rebuildDrafted();
+        rebuildOwners();
+        balancer = null;
+        journalOptimizedTeams();
+    }
+
+    /*Reads new players from a registration file (see PlayerImporter) and adds them to the end of the player list.
+    Each batch is journaled and added as soon as it is read, so no more than one batch is held on the side however
+    long the file is*/
+    public PlayerImporter.Result importPlayers(Path path, int batchSize) throws IOException {
+        leagueLock.writeLock().lock();
+        try {
+            List<Player> existing = new ArrayList<>(players.length + waitingList.size());
+            Collections.addAll(existing, players);
+            existing.addAll(waitingList);
+            return new PlayerImporter(existing, batchSize).importFile(path, batch -> {
+                if (journal != null) {
+                    journal.playersImported(batch);
+                }
+                appendPlayers(batch);
+            });
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*Adds new players to the end of the player list, so every existing player keeps their position. Only the new
+    players are indexed, and they are all free agents, so the owners of everyone else are copied as they are*/
+    private void appendPlayers(List<Player> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        int start = players.length;
+        Player[] grown = Arrays.copyOf(players, start + added.size());
+        for (int i = 0; i < added.size(); i++) {
+            grown[start + i] = added.get(i);
+        }
+        AtomicReferenceArray<Team> claimed = new AtomicReferenceArray<>(grown.length);
+        for (int i = 0; i < start; i++) {
+            claimed.set(i, owners.get(i));
+        }
+        players = grown;
+        index.append(grown);
+        owners = claimed;
+    }
+
+    /*The heights of every player on a team, counted team by team in parallel and merged. Each roster is counted under
+    its team's stripe inside the task that has it, so drafts going on meanwhile can't change it mid-count*/
+    public Histogram heightHistogram() {
+        leagueLock.readLock().lock();
+        try {
+            return Histogram.heights(teams.keySet(), ForkJoinPool.commonPool(), this::stripe);
+        } finally {
+            leagueLock.readLock().unlock();
+        }
+    }
+
+    public FairnessReport fairnessReport() {
+        leagueLock.readLock().lock();
+        try {
+            long start = Metrics.start();
+            FairnessReport report = FairnessReport.compute(teams.keySet(),
+                    Players.highDiscrepancy(index.scores(), MAX_PLAYERS), ForkJoinPool.commonPool(), this::stripe);
+            FAIRNESS_TIMER.stop(start, players.length);
+            return report;
+        } finally {
+            leagueLock.readLock().unlock();
+        }
+    }
+
+    /*Starts the league over with these players, no teams and no one waiting (first come, first served)*/
+    public void reset(Player[] players) throws IOException {
+        leagueLock.writeLock().lock();
+        try {
+            teams.clear();
+            waitingList = new WaitingList();
+            this.players = players;
+            index = new LeagueIndex(players, teams.keySet());
+            rebuildOwners();
+            balancer = null;
+            if (journal != null) {
+                journal.compact(journal.sequence());
+            }
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*Writes the segments of the league that changed since the last save (see SegmentedSnapshot), then empties the
+    journal since every change in it is now saved*/
+    public void save() throws IOException {
+        leagueLock.writeLock().lock();
+        try {
+            long start = Metrics.start();
+            long sequence = journal == null ? 0 : journal.sequence();
+            long bytes = SegmentedSnapshot.write(Paths.get(SegmentedSnapshot.FILE_NAME),
+                    new LeagueSnapshot(players, teams, waitingList, sequence), index::indexOf);
+            if (journal != null) {
+                journal.compact(sequence);
+            }
+            SAVE_TIMER.stop(start, players.length, bytes);
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*Opens the journal and replays every change made since the snapshot the league was loaded from. Returns how many
+    changes were replayed*/
+    public int openJournal(long snapshotSequence) throws IOException {
+        leagueLock.writeLock().lock();
+        try {
+            JournalReplay replay = new JournalReplay();
+            journal = LeagueJournal.open(Paths.get(LeagueJournal.FILE_NAME), snapshotSequence, replay);
+            rebuildOwners();
+            return replay.changes;
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+
+    /*Waits until every change made so far is in the journal on disk, so a crash can't lose it. Does nothing when
+    there is no journal. Called outside the league lock, so other sessions keep working while the disk catches up*/
+    public void sync() throws IOException {
+        LeagueJournal current = journal;
+        if (current != null) {
+            current.sync();
+        }
+    }
+
+    /*Size of the journal in bytes, or 0 if there isn't one*/
+    public long journalSize() {
+        LeagueJournal current = journal;
+        return current == null ? 0 : current.size();
+    }
+
+    /*Stops journaling if the journal has failed to write. Returns true if it did*/
+    public boolean dropFailedJournal() {
+        LeagueJournal current = journal;
+        if (current != null && current.getFailure() != null) {
+            journal = null;
+            return true;
+        }
+        return false;
+    }
+
+    /*Puts each change read back from the journal into the league, the same way it was first made*/
+    private class JournalReplay implements LeagueJournal.Listener {
+        private int changes;
+
+        @Override
+        public void teamCreated(String name, String coach) {
+            Team team = new Team(name, coach);
+            teams.put(team, team.playerSet);
+            index.addTeam(team);
+            changes++;
+        }
+
+        @Override
+        public void playerWaitlisted(Player player) {
+            waitingList.add(player);
+            changes++;
+        }
+
+        @Override
+        public void playerReplaced(int position) {
+            index.replace(position, waitingList.poll(players[position].abilityScore()));
+            changes++;
+        }
+
+        /*Journals written before place() checked its positions can hold a draft at -1, which is skipped*/
+        @Override
+        public void playerDrafted(int position, String team) {
+            if (position < 0) {
+                return;
+            }
+            index.team(team).addPlayer(players[position]);
+            index.draft(position);
+            changes++;
+        }
+
+        @Override
+        public void playerUndrafted(int position, Player player, String team) {
+            index.team(team).removePlayer(player);
+            if (position >= 0) {
+                index.undraft(position);
+            }
+            changes++;
+        }
+
+        @Override
+        public void teamsOptimized(Map<String, int[]> rosters) {
+            for (Map.Entry<String, int[]> roster : rosters.entrySet()) {
+                Team team = index.team(roster.getKey());
+                team.playerSet.clear();
+                for (int position : roster.getValue()) {
+                    team.addPlayer(players[position]);
+                }
+            }
+            Set<Player> onRosters = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Set<Player> teamRoster : teams.values()) {
+                onRosters.addAll(teamRoster);
+            }
+            for (Player player : players) {
+                if (onRosters.contains(player)) {
+                    player.setDrafted();
+                } else {
+                    player.notDrafted();
+                }
+            }
+            index.rebuildDrafted();
+            changes++;
+        }
+
+        @Override
+        public void playersImported(List<Player> imported) {
+            appendPlayers(imported);
+            changes++;
+        }
+
+        @Override
+        public void waitingListOrdered(boolean priority) {
+            waitingList = new WaitingList(waitingList, priority);
+            changes++;
+        }
+    }
+
+    /*Records the rebuilt rosters in the journal, as each team's roster by player list position*/
+    private void journalOptimizedTeams() {
+        if (journal == null) {
+            return;
+        }
+        Map<Team, int[]> rosters = new LinkedHashMap<>();
+        for (Map.Entry<Team, Set<Player>> team : teams.entrySet()) {
+            int[] positions = new int[team.getValue().size()];
+            int i = 0;
+            for (Player player : team.getValue()) {
+                positions[i++] = index.indexOf(player);
+            }
+            rosters.put(team.getKey(), positions);
+        }
+        journal.teamsOptimized(rosters);
+    }
+
+    /*Works out who each player belongs to from the rosters, after a change that rebuilt them*/
+    private void rebuildOwners() {
+        AtomicReferenceArray<Team> claimed = new AtomicReferenceArray<>(players.length);
+        for (Map.Entry<Team, Set<Player>> team : teams.entrySet()) {
+            for (Player player : team.getValue()) {
+                int position = index.indexOf(player);
+                if (position >= 0) {
+                    claimed.set(position, team.getKey());
+                }
+            }
+        }
+        owners = claimed;
+    }
+
+    /*Tells the balancer, if there is one, that a team's roster changed. Drafts on different teams run side by side
+    under the read lock, so the balancer's heaps are updated under its own monitor; place() runs under the write lock*/
+    private void refreshBalancer(Team team) {
+        IncrementalBalancer current = balancer;
+        if (current != null) {
+            synchronized (current) {
+                current.refresh(team);
+            }
+        }
+    }
+
+    private ReentrantLock stripe(Team team) {
+        return stripes[(team.getName().hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    /*Checks that no player is on two teams, that every rostered player's owner is that team and that no roster is
+    over MAX_PLAYERS. Returns what is wrong, or an empty list. Meant for stress tests*/
+    public List<String> verify() {
+        leagueLock.writeLock().lock();
+        try {
+            List<String> problems = new ArrayList<>();
+            Map<Player, Team> seen = new IdentityHashMap<>();
+            for (Map.Entry<Team, Set<Player>> team : teams.entrySet()) {
+                if (team.getValue().size() > MAX_PLAYERS) {
+                    problems.add(team.getKey() + " has " + team.getValue().size() + " players");
+                }
+                for (Player player : team.getValue()) {
+                    Team other = seen.put(player, team.getKey());
+                    if (other != null) {
+                        problems.add(player + " is on both " + other + " and " + team.getKey());
+                    }
+                    int position = index.indexOf(player);
+                    if (position >= 0 && owners.get(position) != team.getKey()) {
+                        problems.add(player + " is on " + team.getKey() + " but belongs to " + owners.get(position));
+                    }
+                    if (!player.isDrafted()) {
+                        problems.add(player + " is on " + team.getKey() + " but isn't marked drafted");
+                    }
+                }
+            }
+            for (int i = 0; i < players.length; i++) {
+                if (owners.get(i) != null && !seen.containsKey(players[i])) {
+                    problems.add(players[i] + " belongs to " + owners.get(i) + " but isn't on its roster");
+                }
+            }
+            return problems;
+        } finally {
+            leagueLock.writeLock().unlock();
+        }
+    }
+}
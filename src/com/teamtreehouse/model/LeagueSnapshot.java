@@ -0,0 +1,351 @@
+package com.teamtreehouse.model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/*A saved copy of the league: the player list, the teams with their rosters and the waiting list. It replaces the three
+.ser files with one binary file laid out in columns:
+    -header: magic number, format version and the number of the last journal record the snapshot includes
+    -string table: every first name, last name, team name and coach name, stored once
+    -players: one column each for first name, last name and height, plus bit sets for experience and drafted
+    -player list: indexes into the player columns
+    -teams: columns for name, coach and roster size, then every roster's player indexes back to back
+    -waiting list: indexes into the player columns in the order the players came in, then whether the list is in
+     priority order (see WaitingList)
+Each column uses the fewest bytes that fit its largest value, so heights take one byte and name ids two. The player
+columns come straight from a PlayerTable built over the distinct players.
+Every player that shows up in more than one place (player list, roster, waiting list) is stored once and comes back
+as one shared object. Loading maps the file into memory instead of streaming it.
+The menus save in segments instead (see SegmentedSnapshot), which use the same columns; a single snapshot is still
+read from older saves and written by batch jobs given a file.*/
+public class LeagueSnapshot {
+    public static final String FILE_NAME = "league.snapshot";
+    private static final int MAGIC = 0x534C4F53;
+    private static final int VERSION = 3;
+
+    private final Player[] players;
+    private final Map<Team, Set<Player>> teams;
+    private final Queue<Player> waitingList;
+    private final long journalSequence;
+
+    public LeagueSnapshot(Player[] players, Map<Team, Set<Player>> teams, Queue<Player> waitingList) {
+        this(players, teams, waitingList, 0);
+    }
+
+    /*journalSequence is the number of the last LeagueJournal record already reflected in this league*/
+    public LeagueSnapshot(Player[] players, Map<Team, Set<Player>> teams, Queue<Player> waitingList,
+                          long journalSequence) {
+        this.players = players;
+        this.teams = teams;
+        this.waitingList = waitingList;
+        this.journalSequence = journalSequence;
+    }
+
+    public Player[] getPlayers() {
+        return players;
+    }
+
+    public Map<Team, Set<Player>> getTeams() {
+        return teams;
+    }
+
+    public Queue<Player> getWaitingList() {
+        return waitingList;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /*Writes the snapshot to a temporary file next to the path and then moves it into place, so a failed save never
+    leaves a half-written snapshot behind. Returns the number of bytes written*/
+    public long write(Path path) throws IOException {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        Map<Player, Integer> playerIds = new HashMap<>();
+        List<Player> table = new ArrayList<>();
+        int[] playerList = index(Arrays.asList(players), playerIds, table);
+        int[] waiting = index(waitingList, playerIds, table);
+        int[][] rosters = new int[teams.size()][];
+        int teamNumber = 0;
+        int rosterTotal = 0;
+        for (Map.Entry<Team, Set<Player>> entry : teams.entrySet()) {
+            rosters[teamNumber] = index(entry.getValue(), playerIds, table);
+            rosterTotal += rosters[teamNumber].length;
+            teamNumber++;
+        }
+        PlayerTable playerColumns = PlayerTable.of(table.toArray(new Player[table.size()]));
+        for (String name : playerColumns.names()) {
+            intern(name, stringIds, strings);
+        }
+        int[] firstNames = new int[playerColumns.size()];
+        int[] lastNames = new int[playerColumns.size()];
+        int[] heights = new int[playerColumns.size()];
+        for (int i = 0; i < playerColumns.size(); i++) {
+            firstNames[i] = playerColumns.firstNameId(i);
+            lastNames[i] = playerColumns.lastNameId(i);
+            heights[i] = playerColumns.height(i);
+        }
+        int[] teamNames = new int[rosters.length];
+        int[] coaches = new int[rosters.length];
+        teamNumber = 0;
+        for (Team team : teams.keySet()) {
+            teamNames[teamNumber] = intern(team.getName(), stringIds, strings);
+            coaches[teamNumber] = intern(team.getCoach(), stringIds, strings);
+            teamNumber++;
+        }
+        long[] experienceWords = playerColumns.experience().toLongArray();
+        long[] draftedWords = playerColumns.drafted().toLongArray();
+        int[] stringOffsets = new int[strings.size() + 1];
+        for (int i = 0; i < strings.size(); i++) {
+            stringOffsets[i + 1] = stringOffsets[i] + strings.get(i).length;
+        }
+        int[] rosterSizes = new int[rosters.length];
+        int[] rosterIndexes = new int[rosterTotal];
+        for (int i = 0, offset = 0; i < rosters.length; i++) {
+            rosterSizes[i] = rosters[i].length;
+            System.arraycopy(rosters[i], 0, rosterIndexes, offset, rosters[i].length);
+            offset += rosters[i].length;
+        }
+
+        int[][] columns = {stringOffsets, firstNames, lastNames, heights, playerList, teamNames, coaches,
+                rosterSizes, rosterIndexes, waiting};
+        long size = 17L + stringOffsets[strings.size()] + 4L * 2 + 8L * (experienceWords.length + draftedWords.length);
+        for (int[] column : columns) {
+            size += 5L + (long) column.length * width(column);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("League is too large to save in one snapshot.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(journalSequence);
+        putColumn(buffer, stringOffsets);
+        for (byte[] string : strings) {
+            buffer.put(string);
+        }
+        putColumn(buffer, firstNames);
+        putColumn(buffer, lastNames);
+        putColumn(buffer, heights);
+        putLongs(buffer, experienceWords);
+        putLongs(buffer, draftedWords);
+        putColumn(buffer, playerList);
+        putColumn(buffer, teamNames);
+        putColumn(buffer, coaches);
+        putColumn(buffer, rosterSizes);
+        putColumn(buffer, rosterIndexes);
+        putColumn(buffer, waiting);
+        buffer.put((byte) (waitingList instanceof WaitingList && ((WaitingList) waitingList).isPriority() ? 1 : 0));
+        buffer.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /*Reads a snapshot written by write(). Throws an IOException if the file is not a snapshot or is from a newer
+    version of the program*/
+    public static LeagueSnapshot read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a league snapshot.");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ".");
+            }
+            long journalSequence = version >= 2 ? buffer.getLong() : 0;
+            int[] offsets = getColumn(buffer);
+            String[] strings = new String[offsets.length - 1];
+            byte[] bytes = new byte[offsets[strings.length]];
+            buffer.get(bytes);
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+
+            int[] firstNames = getColumn(buffer);
+            int[] lastNames = getColumn(buffer);
+            int[] heights = getColumn(buffer);
+            BitSet experience = BitSet.valueOf(getLongs(buffer));
+            BitSet drafted = BitSet.valueOf(getLongs(buffer));
+            Player[] table = new Player[firstNames.length];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = new Player(strings[firstNames[i]], strings[lastNames[i]], heights[i],
+                        experience.get(i), drafted.get(i));
+            }
+
+            Player[] players = players(table, getColumn(buffer));
+            int[] teamNames = getColumn(buffer);
+            int[] coaches = getColumn(buffer);
+            int[] rosterSizes = getColumn(buffer);
+            int[] rosterIndexes = getColumn(buffer);
+            Map<Team, Set<Player>> teams = new TreeMap<>();
+            for (int i = 0, offset = 0; i < teamNames.length; i++) {
+                Team team = new Team(strings[teamNames[i]], strings[coaches[i]]);
+                Roster roster = new Roster();
+                for (int j = 0; j < rosterSizes[i]; j++) {
+                    roster.add(table[rosterIndexes[offset + j]]);
+                }
+                offset += rosterSizes[i];
+                team.playerSet = roster;
+                teams.put(team, roster);
+            }
+            Player[] waiting = players(table, getColumn(buffer));
+            boolean priority = version >= 3 && buffer.get() == 1;
+            WaitingList waitingList = new WaitingList(Arrays.asList(waiting), priority);
+            return new LeagueSnapshot(players, teams, waitingList, journalSequence);
+        } catch (RuntimeException e) {
+            throw new IOException(path + " is damaged and could not be read.", e);
+        }
+    }
+
+    /*Reads the teams.ser, players.ser and waitinglist.ser files that older versions saved in this directory. Each file
+    was written on its own, so a rostered player comes back as a copy of the one in the player list; the rosters are
+    rebuilt as Rosters holding the player list's own objects*/
+    public static LeagueSnapshot readSerialized(Path directory) throws IOException, ClassNotFoundException {
+        Map<Team, Set<Player>> teams;
+        Player[] players;
+        Queue<Player> waitingList;
+        try (ObjectInputStream teamsIn = new ObjectInputStream(
+                     new FileInputStream(directory.resolve("teams.ser").toFile()));
+             ObjectInputStream playersIn = new ObjectInputStream(
+                     new FileInputStream(directory.resolve("players.ser").toFile()));
+             ObjectInputStream waitinglistIn = new ObjectInputStream(
+                     new FileInputStream(directory.resolve("waitinglist.ser").toFile()))) {
+            teams = (Map<Team, Set<Player>>) teamsIn.readObject();
+            players = (Player[]) playersIn.readObject();
+            waitingList = (Queue<Player>) waitinglistIn.readObject();
+        }
+        Map<Player, Player> listed = new HashMap<>();
+        for (Player player : players) {
+            listed.putIfAbsent(player, player);
+        }
+        for (Map.Entry<Team, Set<Player>> entry : teams.entrySet()) {
+            Roster roster = new Roster();
+            for (Player player : entry.getValue()) {
+                roster.add(listed.getOrDefault(player, player));
+            }
+            entry.getKey().playerSet = roster;
+            entry.setValue(roster);
+        }
+        return new LeagueSnapshot(players, teams, waitingList);
+    }
+
+    private static int intern(String string, Map<String, Integer> ids, List<byte[]> strings) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static int[] index(Collection<Player> players, Map<Player, Integer> ids, List<Player> table) {
+        int[] indexes = new int[players.size()];
+        int i = 0;
+        for (Player player : players) {
+            Integer id = ids.get(player);
+            if (id == null) {
+                id = table.size();
+                ids.put(player, id);
+                table.add(player);
+            }
+            indexes[i++] = id;
+        }
+        return indexes;
+    }
+
+    private static Player[] players(Player[] table, int[] indexes) {
+        Player[] players = new Player[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            players[i] = table[indexes[i]];
+        }
+        return players;
+    }
+
+    /*Number of bytes each value of a column needs. Zero means the column is just 0, 1, 2... (like the player list
+    usually is) and no values have to be stored at all*/
+    static int width(int[] column) {
+        int max = 0;
+        boolean sequence = true;
+        for (int i = 0; i < column.length; i++) {
+            max = Math.max(max, column[i]);
+            sequence &= column[i] == i;
+        }
+        if (sequence) {
+            return 0;
+        } else if (max < 1 << 8) {
+            return 1;
+        } else if (max < 1 << 16) {
+            return 2;
+        } else if (max < 1 << 24) {
+            return 3;
+        } else {
+            return 4;
+        }
+    }
+
+    /*Columns are stored as a count, a width in bytes, and then every value using only that many bytes. Values are
+    never negative, so narrowing them loses nothing*/
+    static void putColumn(ByteBuffer buffer, int[] column) {
+        int width = width(column);
+        buffer.putInt(column.length).put((byte) width);
+        for (int value : column) {
+            for (int shift = (width - 1) * 8; shift >= 0; shift -= 8) {
+                buffer.put((byte) (value >>> shift));
+            }
+        }
+    }
+
+    static int[] getColumn(ByteBuffer buffer) {
+        int[] column = new int[buffer.getInt()];
+        int width = buffer.get();
+        for (int i = 0; i < column.length; i++) {
+            if (width == 0) {
+                column[i] = i;
+            } else {
+                int value = 0;
+                for (int j = 0; j < width; j++) {
+                    value = (value << 8) | (buffer.get() & 0xFF);
+                }
+                column[i] = value;
+            }
+        }
+        return column;
+    }
+
+    /*A count, then the values at 8 bytes each*/
+    static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.putInt(values.length);
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + 8 * values.length);
+    }
+
+    static long[] getLongs(ByteBuffer buffer) {
+        long[] values = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + 8 * values.length);
+        return values;
+    }
+}
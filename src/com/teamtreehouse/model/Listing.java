@@ -0,0 +1,98 @@
+package com.teamtreehouse.model;
+
+import java.io.PrintStream;
+import java.util.function.BooleanSupplier;
+
+/*Prints long lists (players, rosters, teams) a chunk at a time instead of a line at a time. Lines are formatted into
+one StringBuilder that is reused from list to list, and the builder is written out once it holds CHUNK_CHARS, at the
+end of a page, or when the list is done. A console flushes on every line written to it, so a list of ten thousand
+players is a handful of writes instead of ten thousand.
+
+Lists longer than a page stop after every pageLines lines and ask (through nextPage) whether to go on. Once the
+answer is no, add() returns false and the caller stops listing. A list that fits on one page is never interrupted.*/
+public class Listing {
+    private static final int CHUNK_CHARS = 16 * 1024;
+
+    private final PrintStream out;
+    private final int pageLines;
+    private final BooleanSupplier nextPage;
+    private final StringBuilder buffer = new StringBuilder(CHUNK_CHARS + 256);
+    private int linesOnPage;
+    private boolean stopped;
+
+    /*pageLines of 0 never stops. nextPage is asked after each full page, and only if there is more to show*/
+    public Listing(PrintStream out, int pageLines, BooleanSupplier nextPage) {
+        this.out = out;
+        this.pageLines = pageLines;
+        this.nextPage = nextPage;
+    }
+
+    /*"number. first last, height: ... (experience)", or without the number if it is 0*/
+    public boolean addStats(int number, Player player) {
+        if (!startLine(number)) {
+            return false;
+        }
+        player.appendStats(buffer);
+        return endLine();
+    }
+
+    /*"number. first last", or without the number if it is 0*/
+    public boolean addName(int number, Player player) {
+        if (!startLine(number)) {
+            return false;
+        }
+        buffer.append(player.getFirstName()).append(' ').append(player.getLastName());
+        return endLine();
+    }
+
+    /*"number. text", or just the text if the number is 0*/
+    public boolean add(int number, String text) {
+        if (!startLine(number)) {
+            return false;
+        }
+        buffer.append(text);
+        return endLine();
+    }
+
+    /*Writes whatever is left and gets ready for the next list*/
+    public void end() {
+        flush();
+        linesOnPage = 0;
+        stopped = false;
+    }
+
+    private boolean startLine(int number) {
+        if (stopped) {
+            return false;
+        }
+        if (pageLines > 0 && linesOnPage == pageLines) {
+            flush();
+            linesOnPage = 0;
+            if (!nextPage.getAsBoolean()) {
+                stopped = true;
+                return false;
+            }
+        }
+        if (number != 0) {
+            buffer.append(number).append(". ");
+        }
+        return true;
+    }
+
+    private boolean endLine() {
+        buffer.append(System.lineSeparator());
+        linesOnPage++;
+        if (buffer.length() >= CHUNK_CHARS) {
+            flush();
+        }
+        return true;
+    }
+
+    private void flush() {
+        if (buffer.length() > 0) {
+            out.append(buffer);
+            out.flush();
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*LZ4's block format, written in plain Java so the program needs nothing else. A block is a run of sequences, each a
+token byte (how many literal bytes follow in the high four bits, how long the match is in the low four, with 255s
+added on when either doesn't fit), the literals, and a two byte offset back to where the match is copied from. The
+last sequence is only literals.
+
+Matches are found the way LZ4's fast mode finds them: the four bytes at each position are hashed into a small table
+of where they were last seen, and a hit is checked and stretched as far as it goes both ways. There is no searching
+for a longer match, which is what makes it fast. Segments are already packed tight (narrow columns, every name
+stored once), so they only come out about a quarter smaller, but decompressing is just copying and runs at hundreds
+of megabytes a second. Every length and offset is checked against the block, so a damaged block gives an
+IOException instead of bad data.*/
+public class Lz4Codec implements BlockCodec {
+    public static final Lz4Codec INSTANCE = new Lz4Codec();
+    private static final int MIN_MATCH = 4;
+    /*As in LZ4: a match can't start in the last 12 bytes, and the last 5 bytes are always literals*/
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+    /*After this many misses in a row the search starts skipping ahead, so data that doesn't compress goes quickly*/
+    private static final int SKIP_TRIGGER = 6;
+
+    private Lz4Codec() {
+    }
+
+    @Override
+    public byte id() {
+        return 1;
+    }
+
+    @Override
+    public String name() {
+        return "lz4";
+    }
+
+    @Override
+    public byte[] compress(byte[] block) {
+        int length = block.length;
+        byte[] out = new byte[length + length / 255 + 16];
+        int op = 0;
+        int anchor = 0;
+        if (length > MATCH_FIND_LIMIT) {
+            int[] table = new int[1 << HASH_BITS];
+            Arrays.fill(table, -1);
+            int limit = length - MATCH_FIND_LIMIT;
+            int matchLimit = length - LAST_LITERALS;
+            int ip = 0;
+            int misses = 0;
+            while (ip < limit) {
+                int sequence = readInt(block, ip);
+                int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(block, ref) != sequence) {
+                    ip += 1 + (misses++ >>> SKIP_TRIGGER);
+                    continue;
+                }
+                misses = 0;
+                while (ip > anchor && ref > 0 && block[ip - 1] == block[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && block[ip + matchLength] == block[ref + matchLength]) {
+                    matchLength++;
+                }
+                int token = op;
+                op = literals(block, anchor, ip - anchor, out, op);
+                out[op++] = (byte) (ip - ref);
+                out[op++] = (byte) ((ip - ref) >>> 8);
+                int extra = matchLength - MIN_MATCH;
+                if (extra >= 15) {
+                    out[token] |= 15;
+                    op = extraLength(out, op, extra - 15);
+                } else {
+                    out[token] |= (byte) extra;
+                }
+                ip += matchLength;
+                anchor = ip;
+                if (ip - 2 < limit) {
+                    table[hash(readInt(block, ip - 2))] = ip - 2;
+                }
+            }
+        }
+        op = literals(block, anchor, length - anchor, out, op);
+        return Arrays.copyOf(out, op);
+    }
+
+    @Override
+    public ByteBuffer decompress(ByteBuffer block, int length) throws IOException {
+        byte[] in = new byte[block.remaining()];
+        block.duplicate().get(in);
+        byte[] out = new byte[length];
+        int ip = 0;
+        int op = 0;
+        try {
+            while (true) {
+                int token = in[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int more;
+                    do {
+                        more = in[ip++] & 0xFF;
+                        literals += more;
+                    } while (more == 255);
+                }
+                System.arraycopy(in, ip, out, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == in.length) {
+                    break;
+                }
+                int offset = (in[ip] & 0xFF) | (in[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int more;
+                    do {
+                        more = in[ip++] & 0xFF;
+                        matchLength += more;
+                    } while (more == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (offset == 0 || offset > op || op + matchLength > length) {
+                    throw new IOException("A compressed block is damaged.");
+                }
+                int from = op - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(out, from, out, op, matchLength);
+                    op += matchLength;
+                } else {
+                    for (int end = op + matchLength; op < end; ) {
+                        out[op++] = out[from++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("A compressed block is damaged.", e);
+        }
+        if (op != length) {
+            throw new IOException("A compressed block is damaged.");
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    /*Writes a token with the literal count (leaving the match length to be filled in), any extra length bytes and
+    the literals. Returns where the output goes on from*/
+    private static int literals(byte[] block, int from, int literals, byte[] out, int op) {
+        int token = op++;
+        if (literals >= 15) {
+            out[token] = (byte) (15 << 4);
+            op = extraLength(out, op, literals - 15);
+        } else {
+            out[token] = (byte) (literals << 4);
+        }
+        System.arraycopy(block, from, out, op, literals);
+        return op + literals;
+    }
+
+    private static int extraLength(byte[] out, int op, int length) {
+        while (length >= 255) {
+            out[op++] = (byte) 255;
+            length -= 255;
+        }
+        out[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] block, int at) {
+        return (block[at] & 0xFF) | (block[at + 1] & 0xFF) << 8 | (block[at + 2] & 0xFF) << 16
+                | (block[at + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,162 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+
+/*A segmented snapshot (see SegmentedSnapshot) read in place instead of loaded. Opening one reads the manifest and
+maps the data file, which takes the same time whatever the size of the league; nothing else is decoded until it is
+asked for:
+    -teams() lists the teams in name order. The names and coaches are read from every team segment the first time
+     it is called, without the rosters
+    -roster() decodes one team from its segment, and its players straight from the player segments they are in
+The last TEAMS_KEPT teams whose rosters were decoded are kept in a least recently used cache, so a coach going back
+and forth between a few rosters doesn't decode them again, and the heap never holds more than those few rosters
+however large the league is. Segments saved with a codec are decompressed when they are read, so the last
+SEGMENTS_KEPT of those are kept the same way; a roster's players usually come from a few player segments.
+
+It is read only and its players aren't shared between rosters the way a loaded league's are, so it is only meant for
+looking: anything that changes the league calls load() first and works on a normal LeagueService.*/
+public class MappedLeague {
+    private static final int TEAMS_KEPT = 64;
+    private static final int SEGMENTS_KEPT = 16;
+
+    private final Path path;
+    private final SegmentedSnapshot.Manifest manifest;
+    private final ByteBuffer data;
+    private String[] teamNames;
+    private String[] coaches;
+    private final Map<String, Team> decoded = new LinkedHashMap<String, Team>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Team> eldest) {
+            return size() > TEAMS_KEPT;
+        }
+    };
+    private final Map<SegmentedSnapshot.Entry, SegmentedSnapshot.Segment> segments =
+            new LinkedHashMap<SegmentedSnapshot.Entry, SegmentedSnapshot.Segment>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<SegmentedSnapshot.Entry, SegmentedSnapshot.Segment> eldest) {
+                    return size() > SEGMENTS_KEPT;
+                }
+            };
+
+    private MappedLeague(Path path, SegmentedSnapshot.Manifest manifest, ByteBuffer data) {
+        this.path = path;
+        this.manifest = manifest;
+        this.data = data;
+    }
+
+    /*Maps the league saved under this manifest. Throws an IOException if it is not a manifest, is from a newer
+    version of the program or its data file is missing*/
+    public static MappedLeague open(Path path) throws IOException {
+        SegmentedSnapshot.Manifest manifest = SegmentedSnapshot.Manifest.read(path);
+        return new MappedLeague(path, manifest, manifest.map(path));
+    }
+
+    /*Reads the whole league into memory, for when the league is going to change*/
+    public LeagueSnapshot load() throws IOException {
+        return SegmentedSnapshot.read(path);
+    }
+
+    public long getJournalSequence() {
+        return manifest.journalSequence;
+    }
+
+    public int playerCount() {
+        return manifest.playerCount;
+    }
+
+    public int waitingCount() {
+        SegmentedSnapshot.Entry waiting = manifest.get(SegmentedSnapshot.WAITING, 0);
+        return waiting == null ? 0 : waiting.count;
+    }
+
+    /*Every team in name order, without their rosters. Each team is made when the list reaches it and isn't kept*/
+    public synchronized List<Team> teams() {
+        if (teamNames == null) {
+            readTeamNames();
+        }
+        String[] names = teamNames;
+        String[] teamCoaches = coaches;
+        return new AbstractList<Team>() {
+            @Override
+            public Team get(int index) {
+                return new Team(names[index], teamCoaches[index]);
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+        };
+    }
+
+    /*The team's players in alphabetical order, or an empty list if there is no such team*/
+    public synchronized List<Player> roster(Team team) {
+        Team kept = decoded.get(team.getName());
+        if (kept == null) {
+            kept = decodeTeam(team.getName());
+            if (kept == null) {
+                return new ArrayList<>();
+            }
+            decoded.put(team.getName(), kept);
+        }
+        return new ArrayList<>(kept.playerSet);
+    }
+
+    private void readTeamNames() {
+        TreeMap<String, String> teams = new TreeMap<>();
+        for (SegmentedSnapshot.Entry entry : manifest.entries(SegmentedSnapshot.TEAMS)) {
+            SegmentedSnapshot.Segment segment = segment(entry);
+            for (int i = 0; i < segment.teamCount(); i++) {
+                teams.put(segment.teamName(i), segment.coach(i));
+            }
+        }
+        teamNames = teams.keySet().toArray(new String[teams.size()]);
+        coaches = teams.values().toArray(new String[teams.size()]);
+    }
+
+    /*A team's segment is found by hashing its name, and the team by going through the few teams in it*/
+    private Team decodeTeam(String name) {
+        SegmentedSnapshot.Entry entry = manifest.get(SegmentedSnapshot.TEAMS, SegmentedSnapshot.bucket(name));
+        if (entry == null) {
+            return null;
+        }
+        SegmentedSnapshot.Segment segment = segment(entry);
+        for (int i = 0; i < segment.teamCount(); i++) {
+            if (segment.teamName(i).equals(name)) {
+                Team team = new Team(name, segment.coach(i));
+                for (int ref : segment.roster(i)) {
+                    team.playerSet.add((ref & 1) == 0 ? player(ref >>> 1) : segment.player(ref >>> 1));
+                }
+                return team;
+            }
+        }
+        return null;
+    }
+
+    private Player player(int position) {
+        SegmentedSnapshot.Entry entry = manifest.get(SegmentedSnapshot.PLAYERS,
+                position / SegmentedSnapshot.PLAYERS_PER_SEGMENT);
+        return segment(entry).player(position % SegmentedSnapshot.PLAYERS_PER_SEGMENT);
+    }
+
+    private SegmentedSnapshot.Segment segment(SegmentedSnapshot.Entry entry) {
+        try {
+            if (entry == null) {
+                throw new IOException(path + " is missing part of the league.");
+            }
+            SegmentedSnapshot.Segment segment = segments.get(entry);
+            if (segment == null) {
+                segment = manifest.segment(data, entry);
+                segments.put(entry, segment);
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
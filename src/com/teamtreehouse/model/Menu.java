@@ -1,96 +1,200 @@
 package com.teamtreehouse.model;
 
 import java.io.*;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.*;
 
+/*The console menus. The league itself (players, teams, rosters and the waiting list) lives in a LeagueService, which
+is safe to share, so every change made here goes through it.
+
+A Menu reads from one reader and writes to one PrintStream: the console for the program itself, or a connection when
+LeagueServer runs many sessions against one league. Leaving the menus (quitting, or the input running out) throws
+SessionEnded back up to run() or runSession() instead of exiting the program, so a session ending never takes the
+other sessions with it*/
 public class Menu {
-    private BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-    private Player[] players;
-    private final double MAX_PLAYERS = 11;
-    private int MAX_TEAMS;
-    private Set<Player> alphaSet = new TreeSet<>();
+    private final BufferedReader br;
+    private final PrintStream out;
+    private final boolean shared;
+    private final Listing listing;
+    private final double MAX_PLAYERS = LeagueService.MAX_PLAYERS;
     private Map<String, String> mainMenu = new TreeMap<>();
     private Map<String, String> organMenu = new TreeMap<>();
     private Map<String, String> coachMenu = new TreeMap<>();
     private Map<String, String> statsMenu = new TreeMap<>();
-    private Map<Team, Set<Player>> teams;
-    private Queue<Player> waitingList;
+    private LeagueService league;
+    private MappedLeague mapped;
+    private static final long JOURNAL_COMPACT_BYTES = 1024 * 1024;
+    private static final int IMPORT_BATCH_SIZE = 10000;
+    private static final long REFINE_MILLIS = 50;
+    private static final String METRICS_FILE = "league-metrics.txt";
+    private static final long METRICS_DUMP_SECONDS = 60;
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("load");
+    private static final int LIST_PAGE_LINES = 1000;
 
-    /*Saves the teams and players list to be used again next time*/
+    /*Saves the teams and players list to be used again next time. A league that was only looked at through the
+    coach menu was never loaded and can't have changed, so the snapshot it was read from is left as it is*/
     private void save() {
+        if (league == null) {
+            return;
+        }
         try {
-            FileOutputStream teamSave = new FileOutputStream("teams.ser");
-            FileOutputStream playerSave = new FileOutputStream("players.ser");
-            FileOutputStream waitSave = new FileOutputStream("waitinglist.ser");
-            ObjectOutputStream team = new ObjectOutputStream(teamSave);
-            ObjectOutputStream player = new ObjectOutputStream(playerSave);
-            ObjectOutputStream wait = new ObjectOutputStream(waitSave);
-            player.writeObject(players);
-            team.writeObject(teams);
-            wait.writeObject(waitingList);
-            player.close();
-            team.close();
-            wait.close();
-            teamSave.close();
-            playerSave.close();
-            waitSave.close();
-            System.out.println("Teams successfully saved!");
+            league.save();
+            out.println("Teams successfully saved!");
         } catch (IOException e) {
-            System.out.println("Problem saving teams. You will have to start over next time.");
-        }
-    }
-
-    /*Imports the players and teams files*/
-    private void importFiles() throws IOException,ClassNotFoundException {
-        FileInputStream teamLoad = new FileInputStream("teams.ser");
-        FileInputStream playerLoad = new FileInputStream("players.ser");
-        FileInputStream waitLoad = new FileInputStream("waitinglist.ser");
-        ObjectInputStream teamsIn = new ObjectInputStream(teamLoad);
-        ObjectInputStream playersIn = new ObjectInputStream(playerLoad);
-        ObjectInputStream waitinglistIn = new ObjectInputStream(waitLoad);
-        teams = (Map<Team, Set<Player>>) teamsIn.readObject();
-        players = (Player[]) playersIn.readObject();
-        waitingList = (Queue<Player>) waitinglistIn.readObject();
-        teamsIn.close();
-        teamLoad.close();
-        playersIn.close();
-        playerLoad.close();
-        waitinglistIn.close();
-        waitLoad.close();
-        System.out.println("Teams successfully loaded!");
+            out.println("Problem saving teams. You will have to start over next time.");
+        }
+    }
+
+    /*Once the journal has grown past JOURNAL_COMPACT_BYTES, the league is saved so the journal can start over.
+    Called between menu choices, when no change is half done*/
+    private void compactJournal() {
+        if (league.dropFailedJournal()) {
+            out.println("Changes can't be written to the journal right now. Please quit to save them.");
+        } else if (league.journalSize() > JOURNAL_COMPACT_BYTES) {
+            try {
+                league.save();
+            } catch (IOException e) {
+                out.println("Problem saving teams. Your changes are still kept in the journal.");
+            }
+        }
+    }
+
+    /*Waits for the change just made to reach the journal on disk, so it is only confirmed once a crash can't lose
+    it. The journal writes changes in groups in the background, so this is usually one short wait for its fsync*/
+    private void syncJournal() {
+        try {
+            league.sync();
+        } catch (IOException e) {
+            out.println("This change could not be written to the journal. Please quit to save it.");
+        }
+    }
+
+    /*Opens the journal and replays every change made since the league was last saved*/
+    private void openJournal(long snapshotSequence) {
+        try {
+            int changes = league.openJournal(snapshotSequence);
+            if (changes > 0) {
+                out.printf("Recovered %d changes made since the last save.%n%n", changes);
+            }
+        } catch (IOException e) {
+            out.println("The change journal could not be opened. Changes will only be kept when you quit.");
+        }
+    }
+
+    /*Imports the players and teams files. Leagues saved before segmented saves existed are still read from their
+    single snapshot file, or before that from their .ser files, and are written in segments the next time the league
+    is saved*/
+    private LeagueSnapshot importFiles() throws IOException,ClassNotFoundException {
+        long start = Metrics.start();
+        Path manifestPath = Paths.get(SegmentedSnapshot.FILE_NAME);
+        Path snapshotPath = Paths.get(LeagueSnapshot.FILE_NAME);
+        LeagueSnapshot snapshot;
+        if (mapped != null) {
+            snapshot = mapped.load();
+        } else if (Files.exists(manifestPath)) {
+            snapshot = SegmentedSnapshot.read(manifestPath);
+        } else if (Files.exists(snapshotPath)) {
+            snapshot = LeagueSnapshot.read(snapshotPath);
+        } else {
+            snapshot = LeagueSnapshot.readSerialized(Paths.get(""));
+        }
+        LOAD_TIMER.stop(start, snapshot.getPlayers().length);
+        return snapshot;
+    }
+
+    /*Maps the saved league instead of loading it (see MappedLeague), so the menus come up at once however big the
+    league is and a coach can look at rosters without the whole league being read. Returns null when the league has
+    to be loaded straight away: when it wasn't saved in segments, or when the journal has changes to be replayed*/
+    private MappedLeague mapSnapshot() {
+        Path manifestPath = Paths.get(SegmentedSnapshot.FILE_NAME);
+        Path journalPath = Paths.get(LeagueJournal.FILE_NAME);
+        try {
+            if (!Files.exists(manifestPath) || (Files.exists(journalPath) && Files.size(journalPath) > 0)) {
+                return null;
+            }
+            long start = Metrics.start();
+            MappedLeague league = MappedLeague.open(manifestPath);
+            LOAD_TIMER.stop(start, league.playerCount());
+            return league;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /*Loads the whole league and opens the journal. Called at startup when the snapshot can't just be mapped, and
+    otherwise the first time the organizer menu is opened*/
+    private void loadLeague() {
+        LeagueSnapshot loaded;
+        try {
+            loaded = importFiles();
+            if (mapped == null) {
+                out.println("Teams successfully loaded!");
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            out.printf("Teams unable to be loaded.%nPlease create new teams from the organizer menu.%n%n");
+            loaded = new LeagueSnapshot(resetPlayers(), new TreeMap<>(), new ArrayDeque<>());
+        }
+        mapped = null;
+        league = new LeagueService(loaded.getPlayers(), loaded.getTeams(), loaded.getWaitingList());
+        openJournal(loaded.getJournalSequence());
+    }
+
+    /*The teams in name order, from the mapped snapshot until the league has been loaded*/
+    private List<Team> teams() {
+        return league == null ? mapped.teams() : new ArrayList<>(league.teams());
+    }
+
+    /*A copy of a team's roster, from the mapped snapshot until the league has been loaded*/
+    private List<Player> roster(Team team) {
+        return league == null ? mapped.roster(team) : league.roster(team);
     }
 
     /*Resets the program. Deletes all teams and resets player list to the default listed in the Players class*/
     private void reset(){
-        Path playerPath = FileSystems.getDefault().getPath("players.ser");
-        Path teamPath = FileSystems.getDefault().getPath("teams.ser");
-        Path waitPath = FileSystems.getDefault().getPath("waitinglist.ser");
         try {
-            Files.delete(playerPath);
-            Files.delete(teamPath);
-            Files.delete(waitPath);
-            teams.clear();
-            resetPlayers();
-            waitingList.clear();
-            MAX_TEAMS = (int)Math.ceil(players.length/MAX_PLAYERS);
-            System.out.println("Players and teams succesfully reset.");
+            league.reset(resetPlayers());
+            SegmentedSnapshot.delete(Paths.get(SegmentedSnapshot.FILE_NAME));
+            Files.deleteIfExists(Paths.get(LeagueSnapshot.FILE_NAME));
+            Files.deleteIfExists(Paths.get("players.ser"));
+            Files.deleteIfExists(Paths.get("teams.ser"));
+            Files.deleteIfExists(Paths.get("waitinglist.ser"));
         } catch (IOException e) {
-            teams.clear();
-            resetPlayers();
-            waitingList.clear();
-            MAX_TEAMS = (int)Math.ceil(players.length/MAX_PLAYERS);
-            System.out.println("Players and teams succesfully reset.");
+            out.println("Old save files could not be deleted. They will be replaced on the next save.");
         }
+        out.println("Players and teams succesfully reset.");
         enter();
         runMainMenu();
     }
 
-    /*Defines the various menu options*/
+    /*Thrown to leave the menus, however deep in them the session is*/
+    static class SessionEnded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        SessionEnded() {
+            super(null, null, false, false);
+        }
+    }
+
+    /*A menu on the console, which loads the league itself (see run())*/
     public Menu() {
+        this(new BufferedReader(new InputStreamReader(System.in)), System.out, null);
+    }
+
+    /*A session on a league someone else loaded and saves, like LeagueServer. Quitting it ends only the session*/
+    public Menu(LeagueService league, BufferedReader in, PrintStream out) {
+        this(in, out, league);
+    }
+
+    /*Defines the various menu options. A shared session has no "Reset program", since it would wipe the league for
+    everyone connected*/
+    private Menu(BufferedReader in, PrintStream out, LeagueService league) {
+        this.br = in;
+        this.out = out;
+        this.league = league;
+        this.shared = league != null;
+        this.listing = new Listing(out, LIST_PAGE_LINES, this::nextPage);
         mainMenu.put("1", "Organizer");
         mainMenu.put("2", "Coach");
         mainMenu.put("3", "Quit");
@@ -102,31 +206,47 @@ public class Menu {
         organMenu.put("6", "View current rosters and their stats");
         organMenu.put("7", "Go to the coach menu");
         organMenu.put("8", "Go back to the main menu");
-        organMenu.put("9", "Reset program");
+        if (!shared) {
+            organMenu.put("9", "Reset program");
+        }
         organMenu.put("10", "Optimize teams");
+        organMenu.put("11", "Import players from a registration file");
+        organMenu.put("12", "Optimize teams with custom balancing and rules");
+        organMenu.put("13", "Diagnostics");
+        organMenu.put("14", "Change the waiting list order");
         coachMenu.put("1", "View/print your team roster");
         coachMenu.put("2", "Go to the organizer menu");
         coachMenu.put("3", "Go back to the main menu");
         statsMenu.put("1", "View team rosters");
         statsMenu.put("2", "Team-by-team height distribution");
         statsMenu.put("3", "Team fairness report");
-        statsMenu.put("4", "Back to organizer menu");
+        statsMenu.put("4", "League-wide height distribution");
+        statsMenu.put("5", "Back to organizer menu");
     }
 
-    /*A shortcut to skip the tedious try/catch blocks*/
+    /*The next line typed. Ends the session when there is nothing more to read, or the connection was closed*/
     private String readLine() {
-        String result = "";
+        String result = null;
         try {
             result = br.readLine();
         } catch (IOException e) {
-            e.printStackTrace();
+            result = null;
+        }
+        if (result == null) {
+            throw new SessionEnded();
         }
         return result;
     }
 
+    /*Asked by the listing after every LIST_PAGE_LINES lines of a long list*/
+    private boolean nextPage() {
+        out.println("Press enter to see more, or type q to stop listing:");
+        return !readLine().trim().equalsIgnoreCase("q");
+    }
+
     /*Another shortcut, prompting the user to press enter before continuing*/
     private void enter() {
-        System.out.println("Please press enter to continue.");
+        out.println("Please press enter to continue.");
         readLine();
     }
 
@@ -137,7 +257,7 @@ public class Menu {
 
     /*Default for all menus*/
     private void invalidChoice() {
-        System.out.println("That is not a valid choice. Please enter the NUMBER of the choice you would like.");
+        out.println("That is not a valid choice. Please enter the NUMBER of the choice you would like.");
     }
 
     /*Checks to make sure input by user is a number. Also allows for typos (eg: 23f)*/
@@ -146,26 +266,29 @@ public class Menu {
         try {
             number = Integer.parseInt(readLine().replaceAll("[\\D]", ""));
         } catch (NumberFormatException nfe) {
-            System.out.println("Please enter a number.");
+            out.println("Please enter a number.");
         }
         return number;
     }
 
     /*Boolean used to check if the team name already exists. Avoids duplication of team names.*/
-    private boolean containsTeam(Map<Team, Set<Player>> teams, String name) {
-        for (Map.Entry team : teams.entrySet()) {
-            if (team.getKey().toString().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean containsTeam(String name) {
+        return league.containsTeam(name);
+    }
+
+    /*Lets the user narrow a long player list down by name before it is printed. Returns the positions of the
+    matching players in the player list*/
+    private NavigableSet<Integer> searchPlayers(boolean freeAgentsOnly) {
+        out.println("Type the beginning of a first or last name to narrow down the list, " +
+                "or just press enter to see everyone:");
+        return league.search(readLine(), freeAgentsOnly);
     }
 
     /*Boolean used to make sure teams have been set up before. Does not allow for user to add/remove players from teams
     that don't exist*/
     private boolean teamsExist() {
-        if (teams.isEmpty()) {
-            System.out.println("No teams are currently set up. Please add teams from the organizer menu.");
+        if (teams().isEmpty()) {
+            out.println("No teams are currently set up. Please add teams from the organizer menu.");
             enter();
             return false;
         } else {
@@ -175,9 +298,9 @@ public class Menu {
 
     /*Boolean used to make sure a team has players on its roster. Does not allow for roster viewing, stats viewing, or
     removal of players from teams that have no roster*/
-    private boolean playersExist(Set<Player> playerList, Team team) {
+    private boolean playersExist(Collection<Player> playerList, Team team) {
         if (playerList.isEmpty()) {
-            System.out.printf("There are currently no players on %s. Please add some before removing them.%n",
+            out.printf("There are currently no players on %s. Please add some before removing them.%n",
                     team.toString());
             enter();
             return false;
@@ -190,7 +313,7 @@ public class Menu {
     Example: Picking player #35 from a list of only 33 players*/
     private boolean playerExists(Player[] playerList, int selection) {
         if (selection > playerList.length) {
-            System.out.printf("Sorry, there are only %d players to choose from. Please select one of them.%n",
+            out.printf("Sorry, there are only %d players to choose from. Please select one of them.%n",
                     playerList.length);
             return false;
         } else {
@@ -202,29 +325,26 @@ public class Menu {
     inside of different menu options*/
     @SuppressWarnings("MalformedFormatString")
     private Team chooseTeam(String option, String menu) {
-        System.out.println("Here are the current teams in the league:");
-        Map<Integer, Team> numberedTeams = new LinkedHashMap<>();
+        out.println("Here are the current teams in the league:");
+        List<Team> numberedTeams = teams();
         int teamNumber = 1;
-        for (Map.Entry team : teams.entrySet()) {
-            numberedTeams.put(teamNumber, (Team) team.getKey());
+        for (Team team : numberedTeams) {
+            listing.add(teamNumber, team.toString());
             teamNumber++;
         }
-
-        for (Map.Entry numberedTeam : numberedTeams.entrySet()) {
-            System.out.printf("%d. %s%n", numberedTeam.getKey(), numberedTeam.getValue().toString());
-        }
-        System.out.printf("%d. Go back to %s menu.%n", teamNumber, menu);
+        listing.end();
+        out.printf("%d. Go back to %s menu.%n", teamNumber, menu);
         int selection;
         do {
-            System.out.printf("Please enter the number of the team you would like to %s:%n", option);
+            out.printf("Please enter the number of the team you would like to %s:%n", option);
             selection = numberChecker();
             if (selection > numberedTeams.size() && selection != teamNumber) {
-                System.out.printf("Sorry, there are only %d teams. Please choose one of them.%n", numberedTeams.size());
+                out.printf("Sorry, there are only %d teams. Please choose one of them.%n", numberedTeams.size());
                 selection = 0;
             }
         } while (selection == 0);
         if (selection != teamNumber) {
-            return numberedTeams.get(selection);
+            return numberedTeams.get(selection - 1);
         } else {
             switch (menu) {
                 case "coach":
@@ -244,41 +364,57 @@ public class Menu {
         }
     }
 
-    /*Attempts to re-load the players and teams from previous usage. If it fails, it adds all the players from the
-    player array into a treeSet called "alphaSet", which alphabetizes the set. It is then put back into the original
-    array, now alphabetized.*/
+    /*Attempts to re-load the players and teams from previous usage. If it fails, the league starts over from the
+    example players, alphabetized by resetPlayers(). A league saved in segments is only mapped at first (see
+    mapSnapshot) and is loaded in full once the organizer menu is opened*/
     public void run() {
-        System.out.printf("Attempting to load teams... Please wait...%n%n");
+        out.printf("Attempting to load teams... Please wait...%n%n");
+        mapped = mapSnapshot();
+        if (mapped != null) {
+            out.println("Teams successfully loaded!");
+        } else {
+            loadLeague();
+        }
+        if (Metrics.isEnabled()) {
+            Metrics.startDumping(Paths.get(METRICS_FILE), METRICS_DUMP_SECONDS);
+        }
+        runSession();
+    }
+
+    /*Loads the whole league the way run() would, printing how it went, and hands it over to be shared instead of
+    showing the menus. Used by LeagueServer*/
+    public LeagueService load() {
+        out.printf("Attempting to load teams... Please wait...%n%n");
+        loadLeague();
+        return league;
+    }
+
+    /*Shows the menus until the user quits or the input runs out*/
+    public void runSession() {
         try {
-            importFiles();
-            MAX_TEAMS = (int)Math.ceil(players.length/MAX_PLAYERS);
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.printf("Teams unable to be loaded.%nPlease create new teams from the organizer menu.%n%n");
-            resetPlayers();
-            teams = new TreeMap<>();
-            MAX_TEAMS = (int)Math.ceil(players.length/MAX_PLAYERS);
-            waitingList = new ArrayDeque<>();
+            runMainMenu();
+        } catch (SessionEnded e) {
+            out.flush();
         }
-        runMainMenu();
     }
 
     /*Adds all the players from the player array into a treeSet called "alphaSet", which alphabetizes the set.
-    It is then put back into the original array, now alphabetized*/
-    private void resetPlayers() {
-        players = Players.load();
-        Collections.addAll(alphaSet, players);
-        players = alphaSet.toArray(new Player[alphaSet.size()]);
+    It is then put back into an array, now alphabetized*/
+    private Player[] resetPlayers() {
+        Set<Player> alphaSet = new TreeSet<>();
+        Collections.addAll(alphaSet, Players.load());
+        return alphaSet.toArray(new Player[alphaSet.size()]);
     }
 
     /*Runs the main menu*/
     private void runMainMenu() {
         String choice;
         do {
-            System.out.println("Welcome to the Youth Soccer League! Here are the user types available:");
+            out.println("Welcome to the Youth Soccer League! Here are the user types available:");
             for (Map.Entry type : mainMenu.entrySet()) {
-                System.out.printf("%s. %s%n", type.getKey(), type.getValue());
+                out.printf("%s. %s%n", type.getKey(), type.getValue());
             }
-            System.out.println("Please enter the number of the user you would like to log in as:");
+            out.println("Please enter the number of the user you would like to log in as:");
             choice = readLine();
             switch (choice) {
                 case "1":
@@ -292,10 +428,14 @@ public class Menu {
                     }
                     break;
                 case "3":
-                    System.out.println("Thanks for visiting the Youth Soccer League! Come again soon.");
-                    save();
-                    System.exit(0);
-                    break;
+                    out.println("Thanks for visiting the Youth Soccer League! Come again soon.");
+                    if (!shared) {
+                        save();
+                        if (Metrics.isEnabled()) {
+                            Metrics.dump(Paths.get(METRICS_FILE));
+                        }
+                    }
+                    throw new SessionEnded();
                 default:
                     invalidChoice();
             }
@@ -304,13 +444,17 @@ public class Menu {
 
     /*Runs the organizer menu*/
     private void runOrganMenu() {
+        if (league == null) {
+            loadLeague();
+        }
         String choice;
         do {
-            System.out.println("Welcome, organizer! Here are your options:");
+            compactJournal();
+            out.println("Welcome, organizer! Here are your options:");
             for (Map.Entry option : organMenu.entrySet()) {
-                System.out.printf("%s. %s%n", option.getKey(), option.getValue());
+                out.printf("%s. %s%n", option.getKey(), option.getValue());
             }
-            System.out.println("Please enter the number of which option you would like to choose:");
+            out.println("Please enter the number of which option you would like to choose:");
             choice = readLine();
             switch (choice) {
                 case "1":
@@ -351,16 +495,43 @@ public class Menu {
                     runMainMenu();
                     break;
                 case "9":
-                    reset();
+                    if (shared) {
+                        invalidChoice();
+                    } else {
+                        reset();
+                    }
                     break;
                 case "10":
-                    Players.optimizeTeams(players,teams);
+                    double narrowed = league.optimize(
+                            new SwapRefiner(REFINE_MILLIS, Runtime.getRuntime().availableProcessors() > 1));
+                    syncJournal();
+                    if (narrowed > 0) {
+                        out.printf("Swapping players narrowed the gap between the best and worst teams " +
+                                "by %.2f points.%n", narrowed);
+                    }
+                    break;
+                case "11":
+                    importPlayers();
+                    enter();
+                    break;
+                case "12":
+                    if (teamsExist()) {
+                        balanceTeams();
+                        enter();
+                    }
+                    break;
+                case "13":
+                    diagnostics();
+                    break;
+                case "14":
+                    waitingListOrder();
+                    enter();
                     break;
                 default:
                     invalidChoice();
             }
         }
-        while (!choice.equals("7") && !choice.equals("8") && !choice.equals("6") && !choice.equals("9"));
+        while (!choice.equals("7") && !choice.equals("8") && !choice.equals("6") && (shared || !choice.equals("9")));
     }
 
     private void addPlayer() {
@@ -370,116 +541,311 @@ public class Menu {
         int height;
         boolean hasPlayedBefore = false;
         do {
-            System.out.println("Please enter the first name of the player you would like to add to the waiting list:");
+            out.println("Please enter the first name of the player you would like to add to the waiting list:");
             firstName = readLine();
-            System.out.println("And now the last name:");
+            out.println("And now the last name:");
             lastName = readLine();
-            System.out.printf("%s %s. Is this correct? (y or n)%n", firstName, lastName);
+            out.printf("%s %s. Is this correct? (y or n)%n", firstName, lastName);
             confirmation = inputTrimmer();
             if(!confirmation.equals("n") && !confirmation.equals("y")){
                 do{
-                    System.out.println("Input not recognized. Please enter y or n.");
+                    out.println("Input not recognized. Please enter y or n.");
                     confirmation = inputTrimmer();
                 } while (!confirmation.equals("n") && !confirmation.equals("y"));
             }
         } while (confirmation.equals("n"));
         do {
-            System.out.printf("Please enter the height (in inches) of %s %s:%n",firstName,lastName);
+            out.printf("Please enter the height (in inches) of %s %s:%n",firstName,lastName);
             do{
                 height=numberChecker();
             } while (height == 0);
-            System.out.printf("%s %s is %d inches tall (%d\' %d\"). Is this correct? (y or n)%n",
+            out.printf("%s %s is %d inches tall (%d\' %d\"). Is this correct? (y or n)%n",
                     firstName,lastName,height,height/12,height%12);
             confirmation = inputTrimmer();
             if(!confirmation.equals("n") && !confirmation.equals("y")){
                 do{
-                    System.out.println("Input not recognized. Please enter y or n.");
+                    out.println("Input not recognized. Please enter y or n.");
                     confirmation = inputTrimmer();
                 } while (!confirmation.equals("n") && !confirmation.equals("y"));
             }
         } while (confirmation.equals("n"));
         do{
-            System.out.printf("Has %s %s played before? (y or n)%n",firstName,lastName);
+            out.printf("Has %s %s played before? (y or n)%n",firstName,lastName);
             String experience;
             do{
                 experience=inputTrimmer();
                 if (experience.equals("y")) {
                     hasPlayedBefore = true;
                 } else if(!experience.equals("n")) {
-                    System.out.println("Input not recognized. Please enter y or n");
+                    out.println("Input not recognized. Please enter y or n");
                 }
             } while(!experience.equals("y") && !experience.equals("n"));
             if(hasPlayedBefore){
-                System.out.printf("Are you sure %s %s has played before? (y or n)%n",firstName,lastName);
+                out.printf("Are you sure %s %s has played before? (y or n)%n",firstName,lastName);
             } else {
-                System.out.printf("Are you sure %s %s has not played before? (y or n)%n",firstName,lastName);
+                out.printf("Are you sure %s %s has not played before? (y or n)%n",firstName,lastName);
             }
             confirmation = inputTrimmer();
             if(!confirmation.equals("n") && !confirmation.equals("y")){
                 do{
-                    System.out.println("Input not recognized. Please enter y or n.");
+                    out.println("Input not recognized. Please enter y or n.");
                     confirmation = inputTrimmer();
                 } while (!confirmation.equals("n") && !confirmation.equals("y"));
             }
         } while (confirmation.equals("n"));
         Player player = new Player(firstName,lastName,height,hasPlayedBefore,false);
-        waitingList.add(player);
-        System.out.println("New player: " + player.toStringStats() + " added to the waiting list!");
+        league.waitlist(player);
+        syncJournal();
+        out.println("New player: " + player.toStringStats() + " added to the waiting list!");
         enter();
     }
 
+    /*Reads new players from a CSV or NDJSON registration file (see PlayerImporter for the formats) and adds them to
+    the end of the player list*/
+    private void importPlayers() {
+        out.println("Please enter the path of the registration file (.csv, .ndjson or .jsonl):");
+        Path path = Paths.get(readLine().trim());
+        PlayerImporter.Result result;
+        try {
+            result = league.importPlayers(path, IMPORT_BATCH_SIZE);
+        } catch (IOException e) {
+            out.println("The registration file could not be read: " + e.getMessage());
+            return;
+        }
+        syncJournal();
+        out.printf("Imported %d of %d players (%d already in the league, %d could not be read) in %.2f " +
+                        "seconds, %.0f rows per second.%n", result.getImported(), result.getRows(),
+                result.getDuplicates(), result.getRejected(), result.getSeconds(), result.getRowsPerSecond());
+    }
+
+    /*Optimizes the teams with BalancedOptimizer, letting the organizer choose how much height, experience and team
+    size count, and name players who have to play together or for a certain team*/
+    private void balanceTeams() {
+        BalanceOptions options = new BalanceOptions((int) MAX_PLAYERS);
+        out.println("How much should height, experience and team size count? Enter three numbers " +
+                "(e.g. 1,2,1), or just press enter to count them equally:");
+        String weights = readLine().trim();
+        if (!weights.isEmpty()) {
+            try {
+                String[] parts = weights.split("[,\\s]+");
+                options = new BalanceOptions(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                        Double.parseDouble(parts[2]), (int) MAX_PLAYERS);
+            } catch (RuntimeException e) {
+                out.println("Those weights weren't understood, so all three will count equally.");
+            }
+        }
+        while (true) {
+            out.println("Players who have to be on the same team (siblings, say) can be chosen now. " +
+                    "Press enter at the search to skip.");
+            List<Player> group = choosePlayers();
+            if (group.isEmpty()) {
+                break;
+            }
+            options.keepTogether(group);
+        }
+        while (true) {
+            out.println("Players who have to play for a certain team (a coach's child, say) can be chosen " +
+                    "now. Press enter at the search to skip.");
+            List<Player> pinned = choosePlayers();
+            if (pinned.isEmpty()) {
+                break;
+            }
+            out.println("Please enter the name of their team:");
+            Team team = league.team(readLine().trim());
+            if (team == null) {
+                out.println("There is no team by that name.");
+                continue;
+            }
+            for (Player player : pinned) {
+                options.pin(player, team);
+            }
+        }
+        List<Player> unplaced;
+        try {
+            unplaced = league.balance(options);
+        } catch (IllegalArgumentException e) {
+            out.println("The teams were left as they were. " + e.getMessage());
+            return;
+        }
+        syncJournal();
+        out.println("Teams balanced!");
+        if (!unplaced.isEmpty()) {
+            out.printf("%d players didn't fit on a team of %d and are still free agents.%n",
+                    unplaced.size(), (int) MAX_PLAYERS);
+        }
+    }
+
+    /*Searches the player list and lets the organizer pick some of the matches by number. Returns no one if the
+    search is left empty or nothing is picked*/
+    private List<Player> choosePlayers() {
+        out.println("Type the beginning of a first or last name to find players:");
+        String search = readLine();
+        List<Player> chosen = new ArrayList<>();
+        if (search.trim().isEmpty()) {
+            return chosen;
+        }
+        Player[] players = league.players();
+        NavigableSet<Integer> matches = league.search(search, false);
+        for (int position : matches) {
+            if (!listing.addStats(position + 1, players[position])) {
+                break;
+            }
+        }
+        listing.end();
+        out.println("Please enter the numbers of the players, separated by commas:");
+        for (String number : readLine().split("[,\\s]+")) {
+            try {
+                int position = Integer.parseInt(number) - 1;
+                if (matches.contains(position)) {
+                    chosen.add(players[position]);
+                } else {
+                    out.printf("Player #%d isn't one of the players listed, so they were skipped.%n",
+                            position + 1);
+                }
+            } catch (NumberFormatException e) {
+                if (!number.isEmpty()) {
+                    out.printf("\"%s\" isn't a number, so it was skipped.%n", number);
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /*Shows the timings and counts collected by Metrics, and lets the organizer turn collecting on or off. While it
+    is on, the same report is also written to METRICS_FILE every METRICS_DUMP_SECONDS seconds*/
+    private void diagnostics() {
+        String choice;
+        do {
+            out.println(Metrics.report());
+            out.printf("Enter t to turn metrics %s, r to reset them, or just press enter to go back:%n",
+                    Metrics.isEnabled() ? "off" : "on");
+            choice = inputTrimmer();
+            switch (choice) {
+                case "t":
+                    Metrics.setEnabled(!Metrics.isEnabled());
+                    if (Metrics.isEnabled()) {
+                        Metrics.startDumping(Paths.get(METRICS_FILE), METRICS_DUMP_SECONDS);
+                    } else {
+                        Metrics.stopDumping();
+                        Metrics.dump(Paths.get(METRICS_FILE));
+                    }
+                    break;
+                case "r":
+                    Metrics.reset();
+                    break;
+                case "":
+                    break;
+                default:
+                    out.println("Input not recognized. Please enter t, r or nothing.");
+            }
+        } while (!choice.isEmpty());
+    }
+
+    /*Switches the waiting list between first come, first served and priority order, where the player who replaces
+    a removed player is the one whose ability score is closest to theirs, so the teams stay as even as they were*/
+    private void waitingListOrder() {
+        boolean priority = league.isWaitingListPriority();
+        out.printf("Players now come off the waiting list %s. Switch to %s? (y or n)%n",
+                priority ? "by the closest ability score" : "first come, first served",
+                priority ? "first come, first served" : "the closest ability score");
+        String confirmation;
+        do {
+            confirmation = inputTrimmer();
+            if (!confirmation.equals("y") && !confirmation.equals("n")) {
+                out.println("Input not recognized. Please enter y or n.");
+            }
+        } while (!confirmation.equals("y") && !confirmation.equals("n"));
+        if (confirmation.equals("y")) {
+            league.setWaitingListPriority(!priority);
+            syncJournal();
+            out.println("Waiting list order changed.");
+        }
+    }
+
+    /*Says where LeagueService placed a player who just joined a fully drafted league, and which players it swapped
+    between teams to keep them even*/
+    private void printMoves(List<IncrementalBalancer.Move> moves) {
+        for (IncrementalBalancer.Move move : moves) {
+            if (move.getFrom() == null) {
+                out.printf("%s was placed on %s.%n", move.getPlayer().toString(), move.getTo().toString());
+            } else {
+                out.printf("%s moved from %s to %s to keep the teams even.%n", move.getPlayer().toString(),
+                        move.getFrom().toString(), move.getTo().toString());
+            }
+        }
+    }
+
     private void removePlayer() {
-        Player newPlayer = waitingList.peek();
+        Player newPlayer = league.nextWaiting();
         if (newPlayer == null) {
-            System.out.println("No new player can fill the void made when a player is deleted.");
-            System.out.println("Please add a new player to the waiting list before removing a current player");
+            out.println("No new player can fill the void made when a player is deleted.");
+            out.println("Please add a new player to the waiting list before removing a current player");
         } else {
-            System.out.println("Here is a list of the current players:");
-            int playerNumber = 1;
-            for (Player player : players) {
-                System.out.printf("%d. %s%n", playerNumber, player.toStringStats());
-                playerNumber++;
+            NavigableSet<Integer> matches = searchPlayers(false);
+            Player[] players = league.players();
+            out.println("Here is a list of the current players:");
+            for (int position : matches) {
+                if (!listing.addStats(position + 1, players[position])) {
+                    break;
+                }
             }
+            listing.end();
             Player playerChoice = null;
             int choice;
             do {
-                System.out.println("Please select the number of the player you would like " +
+                out.println("Please select the number of the player you would like " +
                         "to remove from the player list:");
-                System.out.printf("(Player will be replaced with %s, who is next in line on the waiting list)%n",
-                        newPlayer.toString());
+                if (league.isWaitingListPriority()) {
+                    out.println("(Player will be replaced with whoever on the waiting list has the closest " +
+                            "ability score)");
+                } else {
+                    out.printf("(Player will be replaced with %s, who is next in line on the waiting list)%n",
+                            newPlayer.toString());
+                }
                 do {
                     choice = numberChecker();
                 } while (choice == 0);
                 if (choice <= players.length) {
                     playerChoice = players[choice - 1];
                 } else {
-                    System.out.printf("Sorry, there is no player #%d. There are %d players to choose from.%n",
+                    out.printf("Sorry, there is no player #%d. There are %d players to choose from.%n",
                             choice, players.length);
                 }
             } while (choice > players.length);
             assert playerChoice != null;
             if (!playerChoice.isDrafted()) {
-                System.out.printf("Are you sure you'd like to remove %s from the player list? (y or n)%n",
+                Player replacement = league.nextWaiting(choice - 1);
+                if (league.isWaitingListPriority() && replacement != null) {
+                    out.printf("%s would take their place.%n", replacement.toString());
+                }
+                out.printf("Are you sure you'd like to remove %s from the player list? (y or n)%n",
                         playerChoice.toString());
                 String confirmation;
                 do {
                     confirmation = inputTrimmer();
                     switch (confirmation) {
                         case "y":
-                            System.out.println("Please wait.....");
-                            players[choice - 1] = waitingList.poll();
-                            System.out.printf("%s removed from player list and replaced with %s!%n",
-                                    playerChoice.toString(), newPlayer.toString());
+                            out.println("Please wait.....");
+                            List<IncrementalBalancer.Move> moves = league.replace(choice - 1);
+                            if (moves == null) {
+                                out.printf("Sorry, %s was just drafted or the waiting list was emptied by " +
+                                        "someone else. Please try again.%n", playerChoice.toString());
+                                break;
+                            }
+                            syncJournal();
+                            out.printf("%s removed from player list and replaced with %s!%n",
+                                    playerChoice.toString(), league.players()[choice - 1].toString());
+                            printMoves(moves);
                             break;
                         case "n":
-                            System.out.println("Removal cancelled.");
+                            out.println("Removal cancelled.");
                             break;
                         default:
-                            System.out.println("Please enter either 'y' or 'n'");
+                            out.println("Please enter either 'y' or 'n'");
                     }
                 } while (!confirmation.equals("y") && !confirmation.equals("n"));
             } else {
-                System.out.printf("Sorry, %s is currently on a team. %nPlease remove him from his current team before " +
+                out.printf("Sorry, %s is currently on a team. %nPlease remove him from his current team before " +
                         "removing him from the player list.%n",playerChoice.toString());
             }
         }
@@ -487,27 +853,28 @@ public class Menu {
     }
 
     /*Method used to create a new team*/
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
     private void newTeam() {
-        if (teams.size() < MAX_TEAMS) {
-            Set<Player> playerList = new TreeSet<>();
+        if (league.teams().size() < league.maxTeams()) {
             String name;
             String coach;
             do {
-                System.out.println("Please enter the name of the new team:");
+                out.println("Please enter the name of the new team:");
                 name = readLine();
-                if (containsTeam(teams, name)) {
-                    System.out.printf("Sorry! There's already a team named %s. Please enter a different name.%n", name);
+                if (containsTeam(name)) {
+                    out.printf("Sorry! There's already a team named %s. Please enter a different name.%n", name);
                 }
-            } while (containsTeam(teams, name));
-            System.out.printf("Please enter the coach for the %s:%n", name);
+            } while (containsTeam(name));
+            out.printf("Please enter the coach for the %s:%n", name);
             coach = readLine();
-            Team newTeam = new Team(name, coach);
-            newTeam.playerSet = playerList;
-            teams.put(newTeam, playerList);
-            System.out.printf("Team \"%s\" (coached by %s) created! You may now add new players.%n", name, coach);
+            if (league.createTeam(name, coach) != null) {
+                syncJournal();
+                out.printf("Team \"%s\" (coached by %s) created! You may now add new players.%n", name, coach);
+            } else {
+                out.printf("Sorry, another organizer just made a team named %s or the last team the league " +
+                        "has room for.%n", name);
+            }
         } else {
-            System.out.printf("Sorry, there can only be a max of %d teams.%n", MAX_TEAMS);
+            out.printf("Sorry, there can only be a max of %d teams.%n", league.maxTeams());
         }
     }
 
@@ -516,20 +883,20 @@ public class Menu {
     private void addPlayerToTeam() {
         Team currentTeam = chooseTeam("add players to", "organizer");
         if (currentTeam != null) {
-            Set<Player> currentRoster = teams.get(currentTeam);
             String continuing;
             do {
-                if (currentRoster.size() < MAX_PLAYERS) {
-                    System.out.println("Here is a list of the current free agents:");
-                    System.out.println("(Players already on a team will not be shown)");
-                    int playerNumber = 1;
-                    for (Player player : players) {
-                        if (!player.isDrafted()) {
-                            System.out.printf("%d. %s%n", playerNumber, player.toStringStats());
+                if (league.roster(currentTeam).size() < MAX_PLAYERS) {
+                    NavigableSet<Integer> matches = searchPlayers(true);
+                    Player[] players = league.players();
+                    out.println("Here is a list of the current free agents:");
+                    out.println("(Players already on a team will not be shown)");
+                    for (int position : matches) {
+                        if (!listing.addStats(position + 1, players[position])) {
+                            break;
                         }
-                        playerNumber++;
                     }
-                    System.out.printf("Please select the number of the player you would like to add to the %s:%n",
+                    listing.end();
+                    out.printf("Please select the number of the player you would like to add to the %s:%n",
                             currentTeam.getName());
                     int choice;
                     do {
@@ -537,36 +904,44 @@ public class Menu {
                             choice = numberChecker();
                         } while (choice == 0);
                         if (playerExists(players, choice)) {
-                            if (!players[choice - 1].isDrafted()) {
-                                currentRoster.add(players[choice - 1]);
-                                currentTeam.addPlayer(players[choice-1]);
-                                players[choice - 1].setDrafted();
-                                System.out.printf("%s added to %s!%n",
-                                        players[choice - 1].toString(), currentTeam.getName());
-                                enter();
-                            } else {
-                                System.out.printf("%s is already on a team. " +
-                                                "Please select a different player or remove %s from his current team.%n",
-                                        players[choice - 1].toString(), players[choice - 1].toString());
-                                enter();
+                            switch (league.draft(choice - 1, currentTeam)) {
+                                case DRAFTED:
+                                    syncJournal();
+                                    out.printf("%s added to %s!%n",
+                                            players[choice - 1].toString(), currentTeam.getName());
+                                    break;
+                                case TAKEN:
+                                    out.printf("%s is already on a team. " +
+                                                    "Please select a different player or remove %s from his current " +
+                                                    "team.%n", players[choice - 1].toString(),
+                                            players[choice - 1].toString());
+                                    break;
+                                case FULL:
+                                    out.printf("Sorry, %s filled up before %s could be added.%n",
+                                            currentTeam.toString(), players[choice - 1].toString());
+                                    break;
+                                case SAME_NAME:
+                                    out.printf("Sorry, there is already a player named %s on %s.%n",
+                                            players[choice - 1].toString(), currentTeam.toString());
+                                    break;
                             }
+                            enter();
                         } else {
                             choice = 0;
                         }
                     } while (!playerExists(players, choice));
-                    System.out.printf("Would you like to add another player to the %s? (y or n)%n",
+                    out.printf("Would you like to add another player to the %s? (y or n)%n",
                             currentTeam.getName());
                     do {
                         continuing = inputTrimmer();
                         if (continuing.equals("n")) {
-                            teams.put(currentTeam, currentRoster);
                             otherTeam("add players to");
                         } else if (!continuing.equals("y")) {
-                            System.out.println("Input not recognized. Please enter either y or n.");
+                            out.println("Input not recognized. Please enter either y or n.");
                         }
                     } while (!continuing.equals("y") && !continuing.equals("n"));
                 } else {
-                    System.out.printf("Sorry, too many players on %s. There can only be a max of %d.%n" +
+                    out.printf("Sorry, too many players on %s. There can only be a max of %d.%n" +
                             "Please remove a player before adding another.%n", currentTeam.toString(), MAX_PLAYERS);
                     continuing = "n";
                     enter();
@@ -580,21 +955,24 @@ public class Menu {
     private void removePlayerFromTeam() {
         Team currentTeam = chooseTeam("remove players from", "organizer");
         if (currentTeam != null) {
-            Set<Player> currentRoster = teams.get(currentTeam);
-            if (playersExist(currentRoster, currentTeam)) {
+            if (playersExist(league.roster(currentTeam), currentTeam)) {
                 String continuing;
                 do {
+                    List<Player> currentRoster = league.roster(currentTeam);
                     Player[] rosterArray = currentRoster.toArray(new Player[currentRoster.size()]);
-                    System.out.printf("Here is a list of the players currently on the %s:%n", currentTeam.toString());
+                    out.printf("Here is a list of the players currently on the %s:%n", currentTeam.toString());
                     int playerNumber = 1;
                     for (Player player : rosterArray) {
-                        System.out.printf("%d. %s%n", playerNumber, player.toStringStats());
+                        if (!listing.addStats(playerNumber, player)) {
+                            break;
+                        }
                         playerNumber++;
                     }
+                    listing.end();
                     Player playerChoice = null;
                     int choice;
                     do {
-                        System.out.printf("Please select the number of the player you would like " +
+                        out.printf("Please select the number of the player you would like " +
                                 "to remove from the %s:%n", currentTeam.getName());
                         do {
                             choice = numberChecker();
@@ -602,45 +980,43 @@ public class Menu {
                         if (choice <= rosterArray.length) {
                             playerChoice = rosterArray[choice - 1];
                         } else {
-                            System.out.printf("Sorry, there is no player #%d. There are %d players to choose from.%n",
+                            out.printf("Sorry, there is no player #%d. There are %d players to choose from.%n",
                                     choice, rosterArray.length);
                         }
                     } while (choice > rosterArray.length);
                     assert playerChoice != null;
-                    System.out.printf("Are you sure you'd like to remove %s from the %s? (y or n)%n",
+                    out.printf("Are you sure you'd like to remove %s from the %s? (y or n)%n",
                             playerChoice.toString(), currentTeam.toString());
                     String confirmation;
                     do {
                         confirmation = inputTrimmer();
                         switch (confirmation) {
                             case "y":
-                                System.out.println("Please wait.....");
-                                currentRoster.remove(playerChoice);
-                                currentTeam.removePlayer(playerChoice);
-                                System.out.printf("%s removed from %s!%n",
-                                        playerChoice.toString(), currentTeam.toString());
-                                for (Player player : players) {
-                                    if (player.equals(playerChoice)) {
-                                        player.notDrafted();
-                                    }
+                                out.println("Please wait.....");
+                                if (league.undraft(playerChoice, currentTeam)) {
+                                    syncJournal();
+                                    out.printf("%s removed from %s!%n",
+                                            playerChoice.toString(), currentTeam.toString());
+                                } else {
+                                    out.printf("%s was already taken off %s by someone else.%n",
+                                            playerChoice.toString(), currentTeam.toString());
                                 }
                                 break;
                             case "n":
                                 break;
                             default:
-                                System.out.println("Please enter either 'y' or 'n'");
+                                out.println("Please enter either 'y' or 'n'");
                         }
                     } while (!confirmation.equals("y") && !confirmation.equals("n"));
-                    teams.put(currentTeam, currentRoster);
-                    if (playersExist(currentRoster, currentTeam)) {
-                        System.out.printf("Would you like to remove another player from the %s? " +
+                    if (playersExist(league.roster(currentTeam), currentTeam)) {
+                        out.printf("Would you like to remove another player from the %s? " +
                                 "(Please enter y or n)%n", currentTeam.toString());
                         do {
                             continuing = inputTrimmer();
                             if (continuing.equals("n")) {
                                 otherTeam("remove players from");
                             } else if (!continuing.equals("y")) {
-                                System.out.println("Input not recognized. Please enter either y or n.");
+                                out.println("Input not recognized. Please enter either y or n.");
                             }
                         } while (!continuing.equals("y") && !continuing.equals("n"));
                     } else {
@@ -654,7 +1030,7 @@ public class Menu {
 
     /*Reusable method that allows for a user to add/remove players on a different team*/
     private void otherTeam(String menu) {
-        System.out.printf("Would you like to %s a different team? (y or n)%n", menu);
+        out.printf("Would you like to %s a different team? (y or n)%n", menu);
         String otherTeam;
         do {
             otherTeam = inputTrimmer();
@@ -665,7 +1041,7 @@ public class Menu {
                     removePlayerFromTeam();
                 }
             } else if (!otherTeam.equals("n")) {
-                System.out.println("Input not recognized. Please enter either y or n.");
+                out.println("Input not recognized. Please enter either y or n.");
             }
         } while (!otherTeam.equals("n") && !otherTeam.equals("y"));
     }
@@ -674,11 +1050,11 @@ public class Menu {
     private void runCoachMenu() {
         String choice;
         do {
-            System.out.println("Welcome, coach! Here are your options:");
+            out.println("Welcome, coach! Here are your options:");
             for (Map.Entry type : coachMenu.entrySet()) {
-                System.out.printf("%s. %s%n", type.getKey(), type.getValue());
+                out.printf("%s. %s%n", type.getKey(), type.getValue());
             }
-            System.out.println("Please enter the number of the the choice you would like to see:");
+            out.println("Please enter the number of the the choice you would like to see:");
             choice = readLine();
             switch (choice) {
                 case "1":
@@ -701,11 +1077,11 @@ public class Menu {
     private void runStatsMenu() {
         String choice;
         do {
-            System.out.println("Here are your options:");
+            out.println("Here are your options:");
             for (Map.Entry option : statsMenu.entrySet()) {
-                System.out.printf("%s. %s%n", option.getKey(), option.getValue());
+                out.printf("%s. %s%n", option.getKey(), option.getValue());
             }
-            System.out.println("Please enter the number of the option you would like to view:");
+            out.println("Please enter the number of the option you would like to view:");
             choice = readLine();
             switch (choice) {
                 case "1":
@@ -718,24 +1094,30 @@ public class Menu {
                     fairnessReport();
                     break;
                 case "4":
+                    leagueHeightDistribution();
+                    break;
+                case "5":
                     runOrganMenu();
                     break;
                 default:
                     invalidChoice();
             }
-        } while (!choice.equals("4"));
+        } while (!choice.equals("5"));
     }
 
     /*Used by the coach to print the roster of a team*/
     private void printRoster() {
         Team currentTeam = chooseTeam("view the roster for", "coach");
         if (currentTeam != null) {
-            Set<Player> currentRoster = teams.get(currentTeam);
+            List<Player> currentRoster = roster(currentTeam);
             if (playersExist(currentRoster, currentTeam)) {
-                System.out.printf("Here are all the players currently on the %s:%n", currentTeam.toString());
+                out.printf("Here are all the players currently on the %s:%n", currentTeam.toString());
                 for (Player player : currentRoster) {
-                    System.out.printf("%s%n", player.toString());
+                    if (!listing.addName(0, player)) {
+                        break;
+                    }
                 }
+                listing.end();
                 enter();
             }
         }
@@ -745,42 +1127,79 @@ public class Menu {
     private void printRosterStats() {
         Team currentTeam = chooseTeam("view the roster and stats for", "stats");
         if (currentTeam != null) {
-            Set<Player> currentRoster = teams.get(currentTeam);
+            List<Player> currentRoster = league.roster(currentTeam);
             if (playersExist(currentRoster, currentTeam)) {
-                System.out.printf("Here are all the players currently on the %s:%n", currentTeam.toString());
+                out.printf("Here are all the players currently on the %s:%n", currentTeam.toString());
                 for (Player player : currentRoster) {
-                    System.out.printf("%s%n", player.toStringStats());
+                    if (!listing.addStats(0, player)) {
+                        break;
+                    }
                 }
+                listing.end();
                 enter();
             }
         }
     }
 
-    /*Lists the number of players at each height level for a specified team*/
-    @SuppressWarnings({"MalformedFormatString", "SuspiciousMethodCalls"})
+    /*Lists the number of players at each height level for a specified team. Only the counts are kept; the players at
+    a height are looked up if the organizer asks to see them*/
     private void heightDistribution() {
         Team currentTeam = chooseTeam("view the height distribution for", "stats");
         if (currentTeam != null) {
-            Set<Player> currentRoster = teams.get(currentTeam);
+            List<Player> currentRoster = league.roster(currentTeam);
             if (playersExist(currentRoster, currentTeam)) {
-                Map<Integer, Set<Player>> heightDistribution = new TreeMap<>();
-                for (Player player : currentRoster) {
-                    if (heightDistribution.containsKey(player.getHeightInInches())) {
-                        heightDistribution.get(player.getHeightInInches()).add(player);
-                    } else {
-                        Set<Player> playersHeight = new TreeSet<>();
-                        playersHeight.add(player);
-                        heightDistribution.put(player.getHeightInInches(), playersHeight);
+                out.printf("Here is the height distribution for the %s:%n", currentTeam.toString());
+                printHeights(Histogram.heights(currentRoster));
+                playersAtHeight(currentRoster, currentTeam);
+            }
+        }
+    }
+
+    /*Lists the number of players at each height level across every team in the league*/
+    private void leagueHeightDistribution() {
+        Histogram heights = league.heightHistogram();
+        if (heights.isEmpty()) {
+            out.println("There are no players on any team yet. Please add some first.");
+        } else {
+            out.println("Here is the height distribution for every player on a team:");
+            printHeights(heights);
+        }
+        enter();
+    }
+
+    private void printHeights(Histogram heights) {
+        for (int height = heights.lowest(); height <= heights.highest(); height++) {
+            if (heights.count(height) > 0) {
+                out.printf("%d inches - %d players%n", height, heights.count(height));
+            }
+        }
+        out.printf("Median height: %d inches, 90th percentile: %d inches%n", heights.median(),
+                heights.percentile(90));
+    }
+
+    /*Shows who on the team is a certain height, for as many heights as the organizer asks about*/
+    private void playersAtHeight(List<Player> roster, Team team) {
+        String height;
+        do {
+            out.println("Enter a height in inches to see who is that tall, or just press enter to go back:");
+            height = readLine().trim();
+            if (!height.isEmpty()) {
+                try {
+                    List<Player> players = Histogram.players(roster, Integer.parseInt(height));
+                    if (players.isEmpty()) {
+                        out.printf("Nobody on the %s is %s inches tall.%n", team.toString(), height);
                     }
+                    for (Player player : players) {
+                        if (!listing.addStats(0, player)) {
+                            break;
+                        }
+                    }
+                    listing.end();
+                } catch (NumberFormatException nfe) {
+                    out.println("Please enter a number.");
                 }
-                System.out.printf("Here is the height distribution for the %s:%n", currentTeam.toString());
-                for (Map.Entry entry : heightDistribution.entrySet()) {
-                    System.out.printf("%d inches - %d players%n",
-                            entry.getKey(), heightDistribution.get(entry.getKey()).size());
-                }
-                enter();
             }
-        }
+        } while (!height.isEmpty());
     }
 
     /*This is something I came up with to be able to view, from a very quick and simple glance, how fair the teams are
@@ -797,91 +1216,11 @@ public class Menu {
     I realize this isn't exactly what the project asked for, but I figured this would be a little cleaner, as well as
     allow for the league organizer to see EXACTLY how fair his teams were*/
     private void fairnessReport() {
-        Map<Team, Double> averageHeight = averageHeight();
-        Map<Team, Double> averageExperience = averageExperience();
-        Map<Team, Integer> totalExperience = totalExperience();
-        Map<Team, Double> fairnessTeams = new HashMap<>();
-        for (Map.Entry entry : averageHeight.entrySet()) {
-            fairnessTeams.put((Team) entry.getKey(), averageHeight.get(entry.getKey()) +
-                    averageExperience.get(entry.getKey()));
-        }
-        System.out.println("Teams:");
-        for (Map.Entry team : fairnessTeams.entrySet()) {
-            System.out.printf("%s (coached by %s)%n" +
-                            "        %.0f\" average height%n" +
-                            "        %.0f%% experience (%d out of %d)%n" +
-                            "        Ability score: %.0f%n",
-                    team.getKey().toString(), ((Team) team.getKey()).getCoach(),
-                    averageHeight.get(team.getKey()),
-                    averageExperience.get(team.getKey()), totalExperience.get(team.getKey()),
-                    teams.get(team.getKey()).size(),
-                    fairnessTeams.get(team.getKey()));
-        }
-        double highScore = 0;
-        for (Map.Entry entry : fairnessTeams.entrySet()) {
-            if ((Double) entry.getValue() > highScore) {
-                highScore = (Double) entry.getValue();
-            }
-        }
-        double lowScore = 1000;
-        for (Map.Entry entry : fairnessTeams.entrySet()) {
-            if ((Double) entry.getValue() < lowScore) {
-                lowScore = (Double) entry.getValue();
-            }
-        }
-        double score = (1 - ((highScore - lowScore) / Players.highDiscrepancy(players))) * 100;
-        System.out.printf("%nTotal fairness score: %.0f%%%n", score);
-        enter();
-    }
-
-    /*Groups all teams by their average height. Used for the fairness report*/
-    private Map<Team, Double> averageHeight() {
-        Map<Team, Double> teamAverageHeight = new HashMap<>();
-        for (Map.Entry entry : teams.entrySet()) {
-            if (playersExist((Set<Player>) entry.getValue(), (Team) entry.getKey())) {
-                double sum = 0;
-                for (Player player : (Set<Player>) entry.getValue()) {
-                    sum += player.getHeightInInches();
-                }
-                double average = sum / (((Set<Player>) entry.getValue()).size());
-                teamAverageHeight.put((Team) entry.getKey(), average);
-            }
-        }
-        return teamAverageHeight;
-    }
-
-    /*Groups all teams by their average experience. Used for the fairness report*/
-    private Map<Team, Double> averageExperience() {
-        Map<Team, Double> teamAverageExperience = new HashMap<>();
-        for (Map.Entry entry : teams.entrySet()) {
-            if (playersExist((Set<Player>) entry.getValue(), (Team) entry.getKey())) {
-                double sum = 0;
-                for (Player player : (Set<Player>) entry.getValue()) {
-                    if (player.isPreviousExperience()) {
-                        sum++;
-                    }
-                }
-                double average = (sum / (((Set<Player>) entry.getValue()).size())) * 100;
-                teamAverageExperience.put((Team) entry.getKey(), average);
-            }
-        }
-        return teamAverageExperience;
-    }
-
-    /*Groups all teams by total players with experience. Used for the fairness report*/
-    private Map<Team, Integer> totalExperience() {
-        Map<Team, Integer> teamAverageExperience = new HashMap<>();
-        for (Map.Entry entry : teams.entrySet()) {
-            if (playersExist((Set<Player>) entry.getValue(), (Team) entry.getKey())) {
-                int sum = 0;
-                for (Player player : (Set<Player>) entry.getValue()) {
-                    if (player.isPreviousExperience()) {
-                        sum++;
-                    }
-                }
-                teamAverageExperience.put((Team) entry.getKey(), sum);
-            }
+        FairnessReport report = league.fairnessReport();
+        for (Team team : report.getEmptyTeams()) {
+            playersExist(league.roster(team), team);
         }
-        return teamAverageExperience;
+        report.print(out);
+        enter();
     }
-}
\ No newline at end of file
+}
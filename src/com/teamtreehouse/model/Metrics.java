@@ -0,0 +1,287 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*Counters and latency timers for the parts of the league that can get slow. Everything is off until setEnabled(true)
+is called (or the program is started with -Dleague.metrics=true); while off, start() returns 0 without reading the
+clock and stop() and increment() return right away, so the instrumented code pays for one boolean check.
+
+Timers keep a log-linear histogram like HdrHistogram: every power of two is split into 16 buckets, so any latency from
+a nanosecond to hours is recorded in a fixed array to within about 6%, without keeping the individual times. Counts
+use LongAdder and the histogram AtomicLongArray, so recording never takes a lock.
+
+Typical use:
+    private static final Metrics.Timer TIMER = Metrics.timer("optimizeTeams");
+    ...
+    long start = Metrics.start();
+    ...
+    TIMER.stop(start, players.length);*/
+public class Metrics {
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean("league.metrics");
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /*The timer with this name, made the first time it is asked for*/
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /*The time to pass to Timer.stop, or 0 when metrics are off*/
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /*Forgets everything recorded so far*/
+    public static void reset() {
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /*Counts how often something happens*/
+    public static class Counter {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        private void reset() {
+            count.reset();
+        }
+    }
+
+    /*Records how long each call took, along with how many players it went through and how many bytes it wrote*/
+    public static class Timer {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public void stop(long start) {
+            stop(start, 0, 0);
+        }
+
+        /*items is the number of players the call went through*/
+        public void stop(long start, long items) {
+            stop(start, items, 0);
+        }
+
+        public void stop(long start, long items, long bytes) {
+            if (start == 0) {
+                return;
+            }
+            long nanos = Math.max(0, System.nanoTime() - start);
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            this.items.add(items);
+            this.bytes.add(bytes);
+        }
+
+        /*Values below SUB_BUCKETS get a bucket each; above that, the bucket is the position of the highest set bit
+        followed by the next SUB_BUCKET_BITS bits*/
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+        }
+
+        /*The highest value that lands in a bucket*/
+        private static long bucketValue(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long mantissa = bucket % SUB_BUCKETS;
+            long low = (SUB_BUCKETS + mantissa) << (exponent - SUB_BUCKET_BITS);
+            return low + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getItems() {
+            return items.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /*Players gone through per second of time spent in this timer*/
+        public double getItemsPerSecond() {
+            long nanos = getTotalNanos();
+            return nanos == 0 ? 0 : getItems() / (nanos / 1e9);
+        }
+
+        /*The latency (in nanoseconds) that the given percent of calls finished within, e.g. percentile(99)*/
+        public long percentile(double percent) {
+            long total = 0;
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketValue(i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        private void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            items.reset();
+            bytes.reset();
+            maxNanos.reset();
+        }
+    }
+
+    /*Everything recorded so far as a table*/
+    public static String report() {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.printf("Metrics are %s.%n", enabled ? "on" : "off");
+        out.printf("%-20s %8s %10s %10s %10s %14s %12s%n", "Timer", "Calls", "p50", "p99", "Max", "Players/sec",
+                "Bytes");
+        for (Timer timer : timers.values()) {
+            out.printf("%-20s %8d %10s %10s %10s %14.0f %12d%n", timer.getName(), timer.getCount(),
+                    duration(timer.percentile(50)), duration(timer.percentile(99)), duration(timer.getMaxNanos()),
+                    timer.getItemsPerSecond(), timer.getBytes());
+        }
+        out.printf("%-20s %8s%n", "Counter", "Count");
+        for (Counter counter : counters.values()) {
+            out.printf("%-20s %8d%n", counter.getName(), counter.getCount());
+        }
+        out.flush();
+        return text.toString();
+    }
+
+    private static String duration(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + "ns";
+        } else if (nanos < 10_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        } else if (nanos < 10_000_000_000L) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.1fs", nanos / 1e9);
+    }
+
+    /*Writes the report to a file every period seconds from a background thread, replacing the file each time so a
+    reader never sees half of one. Calling it again changes the file and period*/
+    public static synchronized void startDumping(Path file, long periodSeconds) {
+        stopDumping();
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "league-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopDumping() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /*Writes the report to the file once*/
+    public static void dump(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temp, report().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Metrics could not be written to " + file + ".");
+        }
+    }
+}
@@ -4,12 +4,21 @@ import java.io.Serializable;
 
 public class Player implements Comparable<Player>, Serializable {
     private static final long serialVersionUID = 1L;
+    private static final int HEIGHTS_LISTED = 120;
+    private static final String[] HEIGHTS_FEET = new String[HEIGHTS_LISTED];
+
+    static {
+        for (int inches = 0; inches < HEIGHTS_LISTED; inches++) {
+            HEIGHTS_FEET[inches] = feet(inches);
+        }
+    }
 
     private String firstName;
     private String lastName;
     private int heightInInches;
     private boolean previousExperience;
-    private boolean drafted;
+    private volatile boolean drafted;
+    private transient boolean saved;
 
     public Player(String firstName, String lastName, int heightInInches, boolean previousExperience, boolean drafted) {
         this.firstName = firstName;
@@ -19,6 +28,14 @@ public class Player implements Comparable<Player>, Serializable {
         this.drafted = drafted;
     }
 
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
     public int getHeightInInches() {
         return heightInInches;
     }
@@ -32,11 +49,31 @@ public class Player implements Comparable<Player>, Serializable {
     }
 
     public void setDrafted() {
-        drafted = true;
+        if (!drafted) {
+            drafted = true;
+            saved = false;
+        }
     }
 
     public void notDrafted() {
-        drafted = false;
+        if (drafted) {
+            drafted = false;
+            saved = false;
+        }
+    }
+
+    /*True if the player has changed (been drafted or let go, or moved to another place in the player list) since the
+    league was last saved or loaded, so SegmentedSnapshot has to write them again. A new player is always dirty*/
+    public boolean isDirty() {
+        return !saved;
+    }
+
+    public void setDirty() {
+        saved = false;
+    }
+
+    public void notDirty() {
+        saved = true;
     }
 
     @Override
@@ -74,9 +111,17 @@ public class Player implements Comparable<Player>, Serializable {
         return result;
     }
 
-    /*Converts player height in inches to height in feet. Used for a couple stats printing*/
+    /*Converts player height in inches to height in feet. Used for a couple stats printing. Every height up to
+    HEIGHTS_LISTED inches is worked out once, so printing a long list doesn't build the same strings over and over*/
     public String heightFeet() {
-        return heightInInches / 12 + "\' " + heightInInches % 12 + "\"";
+        if (heightInInches >= 0 && heightInInches < HEIGHTS_FEET.length) {
+            return HEIGHTS_FEET[heightInInches];
+        }
+        return feet(heightInInches);
+    }
+
+    private static String feet(int inches) {
+        return inches / 12 + "\' " + inches % 12 + "\"";
     }
 
     @Override
@@ -86,13 +131,13 @@ public class Player implements Comparable<Player>, Serializable {
 
     /*Used for printing out the stats of a certain player*/
     public String toStringStats() {
-        String experience;
-        if (isPreviousExperience()) {
-            experience = " (has previous experience)";
-        } else {
-            experience = " (does not have previous experience)";
-        }
-        return firstName + " " + lastName + ", " + "height: " + heightFeet() + experience;
+        return appendStats(new StringBuilder(64)).toString();
+    }
+
+    /*The same as toStringStats(), added to the end of a builder without making any strings along the way*/
+    public StringBuilder appendStats(StringBuilder builder) {
+        return builder.append(firstName).append(' ').append(lastName).append(", height: ").append(heightFeet())
+                .append(isPreviousExperience() ? " (has previous experience)" : " (does not have previous experience)");
     }
 
     public double abilityScore(){
@@ -0,0 +1,494 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/*Reads a registration file of new players and hands them over in batches. Two formats are understood, picked by the
+file's extension:
+    -.csv: first name, last name, height in inches, previous experience. A header row is optional; if there is one,
+     its column names decide the order (first/firstName, last/lastName, height/heightInInches,
+     experience/previousExperience)
+    -.ndjson or .jsonl: one object per line, e.g. {"firstName":"Joe","lastName":"Smith","heightInInches":42,
+     "previousExperience":true}
+Experience can be written as true/false, yes/no, y/n or 1/0.
+
+The file is read through a fixed-size buffer and parsed byte by byte, so memory use doesn't depend on the size of the
+file, and the only objects made per row are the two name strings and the Player. Players equal to one already in
+the league (or earlier in the file) are skipped. Rows that can't be read are counted and skipped.*/
+public class PlayerImporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIRST = 0;
+    private static final int LAST = 1;
+    private static final int HEIGHT = 2;
+    private static final int EXPERIENCE = 3;
+
+    /*What happened during one import*/
+    public static class Result {
+        private final long rows;
+        private final long imported;
+        private final long duplicates;
+        private final long rejected;
+        private final long nanos;
+
+        private Result(long rows, long imported, long duplicates, long rejected, long nanos) {
+            this.rows = rows;
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+            this.nanos = nanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : rows / getSeconds();
+        }
+    }
+
+    private final Set<Player> seen;
+    private final int batchSize;
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] scratch = new byte[256];
+    private final int[] fieldStart = new int[4];
+    private final int[] fieldLength = new int[4];
+    private int[] columns = {FIRST, LAST, HEIGHT, EXPERIENCE};
+    private int stringEnd;
+    private boolean json;
+    private boolean firstRow;
+
+    private List<Player> batch;
+    private long rows;
+    private long imported;
+    private long duplicates;
+    private long rejected;
+
+    /*existing is the league's current players, so nobody already in it is imported twice*/
+    public PlayerImporter(Collection<Player> existing, int batchSize) {
+        this.seen = new HashSet<>(existing);
+        this.batchSize = batchSize;
+    }
+
+    public Result importFile(Path path, Consumer<List<Player>> batches) throws IOException {
+        String fileName = path.getFileName().toString().toLowerCase();
+        if (fileName.endsWith(".csv")) {
+            json = false;
+        } else if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) {
+            json = true;
+        } else {
+            throw new IOException("Registration files must end in .csv, .ndjson or .jsonl.");
+        }
+        long start = System.nanoTime();
+        rows = imported = duplicates = rejected = 0;
+        firstRow = true;
+        batch = new ArrayList<>(batchSize);
+        lineLength = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        endLine(batches);
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        endLine(batches);
+        if (!batch.isEmpty()) {
+            batches.accept(batch);
+        }
+        return new Result(rows, imported, duplicates, rejected, System.nanoTime() - start);
+    }
+
+    private void endLine(Consumer<List<Player>> batches) {
+        int length = lineLength;
+        lineLength = 0;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (isBlank(line, 0, length)) {
+            return;
+        }
+        boolean parsed = json ? parseJson(length) : parseCsv(length);
+        if (!json && firstRow && parsed && parseInt(HEIGHT) < 0 && readHeader(length)) {
+            firstRow = false;
+            return;
+        }
+        firstRow = false;
+        rows++;
+        int height = parsed ? parseInt(HEIGHT) : -1;
+        int experience = parsed ? parseBoolean(EXPERIENCE) : -1;
+        if (height <= 0 || experience < 0 || fieldLength[FIRST] <= 0 || fieldLength[LAST] <= 0) {
+            rejected++;
+            return;
+        }
+        Player player = new Player(string(FIRST), string(LAST), height, experience == 1, false);
+        if (!seen.add(player)) {
+            duplicates++;
+            return;
+        }
+        imported++;
+        batch.add(player);
+        if (batch.size() >= batchSize) {
+            batches.accept(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /*Splits a CSV line into fields, taking quoted fields (with "" for a quote) into account. Quoted fields are
+    copied without their quotes into the scratch buffer, so every field can be read back as one range*/
+    private boolean parseCsv(int length) {
+        Arrays.fill(fieldLength, -1);
+        if (scratch.length < length) {
+            scratch = new byte[line.length];
+        }
+        int column = 0;
+        int out = 0;
+        int i = 0;
+        while (i <= length) {
+            int start = out;
+            if (i < length && line[i] == '"') {
+                i++;
+                while (i < length) {
+                    if (line[i] == '"') {
+                        if (i + 1 < length && line[i + 1] == '"') {
+                            scratch[out++] = '"';
+                            i += 2;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    } else {
+                        scratch[out++] = line[i++];
+                    }
+                }
+                while (i < length && line[i] != ',') {
+                    i++;
+                }
+            } else {
+                while (i < length && line[i] != ',') {
+                    scratch[out++] = line[i++];
+                }
+            }
+            if (column < columns.length && columns[column] >= 0) {
+                int end = out;
+                while (start < end && (scratch[start] == ' ' || scratch[start] == '\t')) {
+                    start++;
+                }
+                while (end > start && (scratch[end - 1] == ' ' || scratch[end - 1] == '\t')) {
+                    end--;
+                }
+                fieldStart[columns[column]] = start;
+                fieldLength[columns[column]] = end - start;
+            }
+            column++;
+            i++;
+        }
+        return column >= 4;
+    }
+
+    /*Reads the field values of one flat JSON object. Nested objects and arrays aren't expected in a registration
+    and make the row count as rejected*/
+    private boolean parseJson(int length) {
+        Arrays.fill(fieldLength, -1);
+        if (scratch.length < length) {
+            scratch = new byte[line.length];
+        }
+        int i = skipSpace(0, length);
+        if (i >= length || line[i] != '{') {
+            return false;
+        }
+        i++;
+        int out = 0;
+        while (true) {
+            i = skipSpace(i, length);
+            if (i < length && line[i] == '}') {
+                return true;
+            }
+            if (i >= length || line[i] != '"') {
+                return false;
+            }
+            int keyStart = out;
+            i = readJsonString(i, length, out);
+            if (i < 0) {
+                return false;
+            }
+            int keyEnd = stringEnd;
+            out = keyEnd;
+            int field = fieldFor(scratch, keyStart, keyEnd);
+            i = skipSpace(i, length);
+            if (i >= length || line[i] != ':') {
+                return false;
+            }
+            i = skipSpace(i + 1, length);
+            if (i >= length) {
+                return false;
+            }
+            int valueStart;
+            int valueEnd;
+            if (line[i] == '"') {
+                valueStart = out;
+                i = readJsonString(i, length, out);
+                if (i < 0) {
+                    return false;
+                }
+                valueEnd = stringEnd;
+                out = valueEnd;
+            } else {
+                valueStart = out;
+                while (i < length && line[i] != ',' && line[i] != '}' && line[i] != ' ' && line[i] != '\t') {
+                    if (line[i] == '{' || line[i] == '[') {
+                        return false;
+                    }
+                    scratch[out++] = line[i++];
+                }
+                valueEnd = out;
+            }
+            if (field >= 0) {
+                fieldStart[field] = valueStart;
+                fieldLength[field] = valueEnd - valueStart;
+            }
+            i = skipSpace(i, length);
+            if (i < length && line[i] == ',') {
+                i++;
+            }
+        }
+    }
+
+    /*Copies the JSON string starting at the quote at i into scratch at out, undoing escapes. Returns the position
+    after the closing quote (the copied string ends at stringEnd), or -1 if the string never ends*/
+    private int readJsonString(int i, int length, int out) {
+        i++;
+        while (i < length) {
+            byte b = line[i];
+            if (b == '"') {
+                stringEnd = out;
+                return i + 1;
+            }
+            if (b == '\\' && i + 1 < length) {
+                byte escaped = line[i + 1];
+                i += 2;
+                switch (escaped) {
+                    case 'n':
+                        scratch[out++] = '\n';
+                        break;
+                    case 't':
+                        scratch[out++] = '\t';
+                        break;
+                    case 'r':
+                        scratch[out++] = '\r';
+                        break;
+                    case 'b':
+                    case 'f':
+                        break;
+                    case 'u':
+                        int unit = hex(i, length);
+                        if (unit < 0) {
+                            return -1;
+                        }
+                        i += 4;
+                        int codePoint = unit;
+                        // Characters past U+FFFF (emoji, say) are written as two escapes, a high and a low surrogate
+                        if (Character.isHighSurrogate((char) unit) && i + 1 < length && line[i] == '\\'
+                                && line[i + 1] == 'u') {
+                            int low = hex(i + 2, length);
+                            if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                                codePoint = Character.toCodePoint((char) unit, (char) low);
+                                i += 6;
+                            }
+                        }
+                        byte[] encoded = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+                        for (byte e : encoded) {
+                            scratch[out++] = e;
+                        }
+                        break;
+                    default:
+                        scratch[out++] = escaped;
+                }
+            } else {
+                scratch[out++] = b;
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /*The value of the four hex digits of a unicode escape, starting at i, or -1 if they aren't there*/
+    private int hex(int i, int length) {
+        if (i + 4 > length) {
+            return -1;
+        }
+        int value = 0;
+        for (int j = 0; j < 4; j++) {
+            int digit = Character.digit(line[i + j], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 16 + digit;
+        }
+        return value;
+    }
+
+    /*Treats the first CSV row as a header if its columns are names this importer knows, and uses them to decide the
+    column order for the rest of the file*/
+    private boolean readHeader(int length) {
+        int[] order = new int[4];
+        int[] fields = new int[4];
+        Arrays.fill(fields, -1);
+        int column = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == ',') {
+                int field = fieldFor(line, start, i);
+                if (column < 4) {
+                    order[column] = field;
+                    if (field >= 0) {
+                        fields[field] = column;
+                    }
+                }
+                column++;
+                start = i + 1;
+            }
+        }
+        for (int field : fields) {
+            if (field < 0) {
+                return false;
+            }
+        }
+        columns = order;
+        return true;
+    }
+
+    private static final String[][] FIELD_NAMES = {
+            {"first", "firstname"},
+            {"last", "lastname"},
+            {"height", "heightininches"},
+            {"experience", "previousexperience", "experienced"}};
+
+    /*Which field a column or key name stands for, ignoring case, spaces, underscores and quotes, or -1*/
+    private static int fieldFor(byte[] bytes, int start, int end) {
+        for (int field = 0; field < FIELD_NAMES.length; field++) {
+            for (String name : FIELD_NAMES[field]) {
+                if (sameName(bytes, start, end, name)) {
+                    return field;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*Compares only the letters of the bytes to the name, which is all lower case*/
+    private static boolean sameName(byte[] bytes, int start, int end, String name) {
+        int matched = 0;
+        for (int i = start; i < end; i++) {
+            char c = (char) bytes[i];
+            if (Character.isLetter(c)) {
+                if (matched == name.length() || Character.toLowerCase(c) != name.charAt(matched)) {
+                    return false;
+                }
+                matched++;
+            }
+        }
+        return matched == name.length();
+    }
+
+    /*A whole number, or -1 if the field is missing or isn't one*/
+    private int parseInt(int field) {
+        int length = fieldLength[field];
+        if (length <= 0 || length > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = fieldStart[field]; i < fieldStart[field] + length; i++) {
+            byte b = scratch[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /*1 for true/yes/y/1, 0 for false/no/n/0, -1 for anything else*/
+    private int parseBoolean(int field) {
+        int start = fieldStart[field];
+        int length = fieldLength[field];
+        if (length <= 0) {
+            return -1;
+        }
+        if (matches(start, length, "true") || matches(start, length, "yes") || matches(start, length, "y")
+                || matches(start, length, "1")) {
+            return 1;
+        }
+        if (matches(start, length, "false") || matches(start, length, "no") || matches(start, length, "n")
+                || matches(start, length, "0")) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private boolean matches(int start, int length, String word) {
+        if (length != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase((char) scratch[start + i]) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int field) {
+        return new String(scratch, fieldStart[field], fieldLength[field], StandardCharsets.UTF_8);
+    }
+
+    private int skipSpace(int i, int length) {
+        while (i < length && (line[i] == ' ' || line[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isBlank(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
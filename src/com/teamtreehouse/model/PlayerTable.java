@@ -0,0 +1,172 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+
+/*A column-by-column copy of a list of players, for work that goes over the whole league at once. Heights and ability
+scores sit in primitive arrays, experience and drafted flags in bit sets, and names are stored once each in a
+dictionary and referred to by number. Scans over a column touch one small array instead of chasing every Player
+object.
+
+The Player objects stay the real records (they are what Menu shows, edits and puts on rosters), and the league is
+not stored in a table. A table is a copy taken at one moment and is not kept up to date when the players change, so
+it is only built for one job and then dropped: ScoreIndex builds one to sort the league by score, and LeagueSnapshot
+one to write the player columns. The optimizer, team stats and fairness report read the Player objects and rosters,
+not a table.*/
+public class PlayerTable {
+    private final Player[] players;
+    private final int[] heights;
+    private final double[] abilityScores;
+    private final BitSet experience;
+    private final BitSet drafted;
+    private final int[] firstNames;
+    private final int[] lastNames;
+    private final List<String> names = new ArrayList<>();
+    private final int[] nameRanks;
+
+    private PlayerTable(Player[] players) {
+        this.players = players;
+        heights = new int[players.length];
+        abilityScores = new double[players.length];
+        experience = new BitSet(players.length);
+        drafted = new BitSet(players.length);
+        firstNames = new int[players.length];
+        lastNames = new int[players.length];
+        Map<String, Integer> nameIds = new HashMap<>();
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            heights[i] = player.getHeightInInches();
+            abilityScores[i] = player.abilityScore();
+            experience.set(i, player.isPreviousExperience());
+            drafted.set(i, player.isDrafted());
+            firstNames[i] = nameId(player.getFirstName(), nameIds);
+            lastNames[i] = nameId(player.getLastName(), nameIds);
+        }
+        Integer[] alphabetical = new Integer[names.size()];
+        for (int i = 0; i < alphabetical.length; i++) {
+            alphabetical[i] = i;
+        }
+        Arrays.sort(alphabetical, (a, b) -> names.get(a).compareTo(names.get(b)));
+        nameRanks = new int[names.size()];
+        for (int rank = 0; rank < alphabetical.length; rank++) {
+            nameRanks[alphabetical[rank]] = rank;
+        }
+    }
+
+    public static PlayerTable of(Player[] players) {
+        return new PlayerTable(players);
+    }
+
+    private int nameId(String name, Map<String, Integer> nameIds) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            nameIds.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    public int size() {
+        return players.length;
+    }
+
+    public Player player(int index) {
+        return players[index];
+    }
+
+    public int height(int index) {
+        return heights[index];
+    }
+
+    public boolean isPreviousExperience(int index) {
+        return experience.get(index);
+    }
+
+    public boolean isDrafted(int index) {
+        return drafted.get(index);
+    }
+
+    public double abilityScore(int index) {
+        return abilityScores[index];
+    }
+
+    /*A copy of the ability score column, for callers that need to rearrange it*/
+    public double[] abilityScores() {
+        return abilityScores.clone();
+    }
+
+    public String firstName(int index) {
+        return names.get(firstNames[index]);
+    }
+
+    public String lastName(int index) {
+        return names.get(lastNames[index]);
+    }
+
+    /*Every distinct first and last name, each once. firstNameId and lastNameId are positions in this list*/
+    public List<String> names() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public int firstNameId(int index) {
+        return firstNames[index];
+    }
+
+    public int lastNameId(int index) {
+        return lastNames[index];
+    }
+
+    /*The experience and drafted flags as bit sets, indexed by player*/
+    public BitSet experience() {
+        return (BitSet) experience.clone();
+    }
+
+    public BitSet drafted() {
+        return (BitSet) drafted.clone();
+    }
+
+    /*Player indexes in the order Players.comparator puts them: highest ability score first, then alphabetical by last
+    and first name, with players who have the same score and name kept in table order. Names are compared by their
+    alphabetical rank in the dictionary, so sorting never compares strings. ScoreIndex keeps this order up to date as
+    players change*/
+    int[] sortedByScore() {
+        int[] order = new int[players.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[order.length], 0, order.length);
+        return order;
+    }
+
+    /*Same order as Players.comparator, except that players with the same score and name compare equal*/
+    int compare(int a, int b) {
+        if (abilityScores[a] != abilityScores[b]) {
+            return abilityScores[a] > abilityScores[b] ? -1 : 1;
+        } else if (lastNames[a] != lastNames[b]) {
+            return Integer.compare(nameRanks[lastNames[a]], nameRanks[lastNames[b]]);
+        } else {
+            return Integer.compare(nameRanks[firstNames[a]], nameRanks[firstNames[b]]);
+        }
+    }
+
+    /*A stable sort, so among equal players the one that comes first in the table stays first*/
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle);
+        mergeSort(order, buffer, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || (left < middle && compare(buffer[left], buffer[right]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.util.*;
 import java.util.stream.*;
 
 public class Players {
+    private static final Metrics.Timer OPTIMIZE_TIMER = Metrics.timer("optimizeTeams");
+    private static final Metrics.Timer DISCREPANCY_TIMER = Metrics.timer("highDiscrepancy");
 
     public static Player[] load() {
         return new Player[]{
@@ -47,63 +49,148 @@ public class Players {
     /*A static int used to calculate the highest discrepancy possible between two teams' average ability scores. This
     is used in the team fairness report*/
     public static double highDiscrepancy(Player[] players) {
-        Set<Player> ascending = new TreeSet<>(comparator);
-        Collections.addAll(ascending, players);
-        Player[] sorted = ascending.toArray(new Player[ascending.size()]);
-        Player[] topEleven = new Player[11];
-        Player[] bottomEleven = new Player[11];
-        for (int i = 0; i < 11; i++) {
-            topEleven[i] = sorted[i];
+        return highDiscrepancy(players, 11);
+    }
+
+    /*The gap between the average ability score of the best possible team of teamSize players and the worst possible
+    one. Instead of sorting every player, the scores are copied into one array and partitioned with quickselect
+    until the top and bottom teamSize scores are each on their own side, which takes linear time. If there are
+    fewer players than a full team, every player counts as both the best and the worst team*/
+    public static double highDiscrepancy(Player[] players, int teamSize) {
+        long start = Metrics.start();
+        double[] scores = new double[players.length];
+        for (int i = 0; i < players.length; i++) {
+            scores[i] = players[i].abilityScore();
         }
-        for (int i = 0, j = 32; i < 11; i++, j--) {
-            bottomEleven[i] = sorted[j];
+        double discrepancy = highDiscrepancy(scores, teamSize);
+        DISCREPANCY_TIMER.stop(start, players.length);
+        return discrepancy;
+    }
+
+    /*The same, read off the two ends of an already sorted ScoreIndex, so nothing is selected or sorted unless the
+    index has changed a lot since it was last used*/
+    public static double highDiscrepancy(ScoreIndex players, int teamSize) {
+        long start = Metrics.start();
+        double discrepancy = players.highDiscrepancy(teamSize);
+        DISCREPANCY_TIMER.stop(start, players.size());
+        return discrepancy;
+    }
+
+    private static double highDiscrepancy(double[] scores, int teamSize) {
+        int count = Math.min(teamSize, scores.length);
+        if (count <= 0) {
+            return 0;
         }
+        select(scores, 0, scores.length - 1, scores.length - count);
         double top = 0;
+        for (int i = scores.length - count; i < scores.length; i++) {
+            top += scores[i];
+        }
+        select(scores, 0, scores.length - 1, count - 1);
         double bottom = 0;
-        for (Player player : topEleven) {
-            top += player.abilityScore();
+        for (int i = 0; i < count; i++) {
+            bottom += scores[i];
         }
-        for (Player player : bottomEleven) {
-            bottom += player.abilityScore();
+        return (top / count) - (bottom / count);
+    }
+
+    /*Rearranges scores[from..to] so that the value at index k is the one that would be there if the range were
+    sorted, with nothing bigger before it and nothing smaller after it*/
+    private static void select(double[] scores, int from, int to, int k) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (scores[middle] < scores[from]) swap(scores, middle, from);
+            if (scores[to] < scores[from]) swap(scores, to, from);
+            if (scores[to] < scores[middle]) swap(scores, to, middle);
+            double pivot = scores[middle];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (scores[i] < pivot) i++;
+                while (scores[j] > pivot) j--;
+                if (i <= j) {
+                    swap(scores, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                to = j;
+            } else if (k >= i) {
+                from = i;
+            } else {
+                return;
+            }
         }
-        return (top / 11) - (bottom / 11);
     }
 
-    /*A static method used to create the fairest teams possible based on a set of teams and players*/
+    private static void swap(double[] scores, int i, int j) {
+        double temp = scores[i];
+        scores[i] = scores[j];
+        scores[j] = temp;
+    }
+
+    /*A static method used to create the fairest teams possible based on a set of teams and players. The players are
+    sorted by a ScoreIndex, which sorts a PlayerTable copy of them, so the sort compares primitive scores and name
+    ranks instead of calling abilityScore() and String.compareTo for every comparison*/
     public static void optimizeTeams(Player[] players, Map<Team, Set<Player>> teams) {
+        optimizeTeams(players, teams, null);
+    }
+
+    /*Same as above, then hands the finished rosters to the refiner (if there is one) to polish. Returns how much the
+    refiner narrowed the gap between the best and worst teams*/
+    public static double optimizeTeams(Player[] players, Map<Team, Set<Player>> teams, TeamRefiner refiner) {
+        return optimizeTeams(new ScoreIndex(players), teams, refiner);
+    }
+
+    /*Same again, handing out players in the order a ScoreIndex already keeps, so optimizing the same league again
+    skips the sort. Like the TreeSet the optimizer used to build, a player with the same score and name as the one
+    before them is left out*/
+    public static double optimizeTeams(ScoreIndex players, Map<Team, Set<Player>> teams, TeamRefiner refiner) {
+        long start = Metrics.start();
         for (Map.Entry team : teams.entrySet()) {
             ((Set<Player>) team.getValue()).clear();
             ((Team) team.getKey()).playerSet.clear();
         }
-        Set<Player> ascending = new TreeSet<>(comparator);
-        Collections.addAll(ascending, players);
-        Player[] sorted = ascending.toArray(new Player[ascending.size()]);
+        int[] sorted = players.order();
         Team[] listOfTeams = new Team[teams.size()];
         int teamNumber = 0;
         for (Map.Entry team : teams.entrySet()) {
             listOfTeams[teamNumber] = (Team) team.getKey();
             teamNumber++;
         }
-        for (Player aSorted : sorted) {
-            lowestScore(listOfTeams).addPlayer(aSorted);
+        if (listOfTeams.length != 0) {
+            TeamAssigner assigner = new TeamAssigner(listOfTeams);
+            for (int i = 0; i < sorted.length; i++) {
+                if (i > 0 && players.sameScoreAndName(sorted[i - 1], sorted[i])) {
+                    continue;
+                }
+                int lowest = assigner.lowest();
+                Team team = listOfTeams[lowest];
+                int before = team.playerSet.size();
+                team.addPlayer(players.player(sorted[i]));
+                if (team.playerSet.size() != before) {
+                    assigner.credit(lowest, players.score(sorted[i]));
+                }
+            }
         }
         for (Team team : listOfTeams) {
             teams.put(team, team.playerSet);
         }
-        for (Player player : players) {
-            player.setDrafted();
+        for (int position : sorted) {
+            players.player(position).setDrafted();
         }
+        double narrowed = refiner == null || listOfTeams.length == 0 ? 0 : refiner.refine(listOfTeams);
+        OPTIMIZE_TIMER.stop(start, sorted.length);
+        return narrowed;
     }
 
-    /*Compares players based on their ability scores*/
+    /*Compares players based on their ability scores. Each score is worked out once per comparison*/
     public static Comparator<Player> comparator = new Comparator<Player>() {
         @Override
         public int compare(Player o1, Player o2) {
-            if (compare(o1.abilityScore(), o2.abilityScore()) == 0) {
-                return o1.compareTo(o2);
-            } else {
-                return compare(o1.abilityScore(), o2.abilityScore());
-            }
+            int byScore = compare(o1.abilityScore(), o2.abilityScore());
+            return byScore == 0 ? o1.compareTo(o2) : byScore;
         }
 
         private int compare(double v, double v1) {
@@ -117,49 +204,4 @@ public class Players {
         }
     };
 
-    /*Compares teams, first on their total ability score, then on their player set sizes. Used for team optimization*/
-    private static Comparator<Team> teamComparator = new Comparator<Team>(){
-        @Override
-        public int compare(Team o1, Team o2){
-            if(o1.equals(o2)){
-                return 0;
-            } else if (o1.totalAbilityScore() == o2.totalAbilityScore()){
-                if(o1.playerSet.size() == o2.playerSet.size()){
-                    return o1.compareTo(o2);
-                } else {
-                    return compare(o1.playerSet.size(),o2.playerSet.size());
-                }
-            } else {
-                return compare(o1.totalAbilityScore(), o2.totalAbilityScore());
-            }
-        }
-
-        private int compare(double v, double v1) {
-            if (v == v1){
-                return 0;
-            } else if(v<v1){
-                return -1;
-            } else {
-                return 1;
-            }
-        }
-
-        private int compare(int size, int size1) {
-            if (size == size1){
-                return 0;
-            } else if(size<size1){
-                return -1;
-            } else {
-                return 1;
-            }
-        }
-    };
-
-    private static Team lowestScore(Team[] teams){
-        assert teams.length!=0;
-        Set<Team> organized = new TreeSet<>(teamComparator);
-        Collections.addAll(organized,teams);
-        Team[] organizedTeams = organized.toArray(new Team[organized.size()]);
-        return organizedTeams[0];
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package com.teamtreehouse.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/*A team's set of players, alphabetized like a TreeSet, that keeps running sums of its players' heights, experience
+and ability scores. Every way of changing the set (add, remove, clear, removing through the iterator) goes through
+here, so the sums stay correct even when a roster is changed directly instead of through Team*/
+public class Roster extends AbstractSet<Player> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final TreeSet<Player> players = new TreeSet<>();
+    private long totalHeight;
+    private int totalExperience;
+    private double totalAbilityScore;
+    private transient boolean saved;
+
+    public Roster() {
+    }
+
+    public Roster(Collection<Player> players) {
+        addAll(players);
+    }
+
+    public long totalHeight() {
+        return totalHeight;
+    }
+
+    public int totalExperience() {
+        return totalExperience;
+    }
+
+    public double totalAbilityScore() {
+        return totalAbilityScore;
+    }
+
+    /*True if the roster has changed since notDirty() was last called (see Team.isDirty())*/
+    public boolean isDirty() {
+        return !saved;
+    }
+
+    public void notDirty() {
+        saved = true;
+    }
+
+    @Override
+    public boolean add(Player player) {
+        if (players.add(player)) {
+            count(player, 1);
+            return true;
+        }
+        return false;
+    }
+
+    /*Players are matched by name like in a TreeSet, so the player actually removed may be a different object than
+    the one passed in. The sums are updated with the one that was stored*/
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Player)) {
+            return false;
+        }
+        Player stored = players.floor((Player) o);
+        if (stored != null && stored.compareTo((Player) o) == 0 && players.remove(stored)) {
+            count(stored, -1);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Player && players.contains(o);
+    }
+
+    @Override
+    public void clear() {
+        players.clear();
+        saved = false;
+        totalHeight = 0;
+        totalExperience = 0;
+        totalAbilityScore = 0;
+    }
+
+    @Override
+    public int size() {
+        return players.size();
+    }
+
+    @Override
+    public Iterator<Player> iterator() {
+        Iterator<Player> iterator = players.iterator();
+        return new Iterator<Player>() {
+            private Player last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Player next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                count(last, -1);
+            }
+        };
+    }
+
+    private void count(Player player, int sign) {
+        saved = false;
+        totalHeight += sign * player.getHeightInInches();
+        if (player.isPreviousExperience()) {
+            totalExperience += sign;
+        }
+        totalAbilityScore += sign * player.abilityScore();
+    }
+}
@@ -0,0 +1,173 @@
+package com.teamtreehouse.model;
+
+/*Every position in a player list, kept sorted the way the optimizer hands out players: highest ability score first,
+then alphabetical by last and first name, then by position. Sorting the league is the slow part of optimizing and of
+the fairness report's high discrepancy, so the order is kept here and shared by both instead of being sorted again
+by each of them every time.
+
+The scores are cached in a primitive array by position and the order is a sorted int array, so reading the order
+never calls abilityScore() or touches a Player. The first query sorts the whole list (through PlayerTable); after
+that, a player replaced at a position is moved with two binary searches and an array copy. Anything that changes
+many players at once calls invalidate(), and the next query sorts again.
+
+Calls are synchronized, since the first query after a change rearranges the arrays.*/
+public class ScoreIndex {
+    private final Player[] players;
+    private double[] scores;
+    private int[] order;
+    private int count;
+    private boolean dirty = true;
+
+    /*players is shared, not copied: changes to it have to be reported with remove() and add(), or invalidate()*/
+    public ScoreIndex(Player[] players) {
+        this.players = players;
+    }
+
+    /*The order has to be worked out again before the next query*/
+    public synchronized void invalidate() {
+        dirty = true;
+    }
+
+    /*Takes the player at this position out of the order. Called before the player list changes there*/
+    public synchronized void remove(int position) {
+        if (dirty) {
+            return;
+        }
+        int rank = find(position);
+        if (rank < 0) {
+            dirty = true;
+            return;
+        }
+        System.arraycopy(order, rank + 1, order, rank, count - rank - 1);
+        count--;
+    }
+
+    /*Puts the player now at this position into the order. Called after the player list changed there*/
+    public synchronized void add(int position) {
+        if (dirty) {
+            return;
+        }
+        scores[position] = players[position].abilityScore();
+        int rank = -(find(position) + 1);
+        if (rank < 0 || count == order.length) {
+            dirty = true;
+            return;
+        }
+        System.arraycopy(order, rank, order, rank + 1, count - rank);
+        order[rank] = position;
+        count++;
+    }
+
+    public synchronized int size() {
+        sort();
+        return count;
+    }
+
+    /*The position of the player at this rank, 0 being the best*/
+    public synchronized int position(int rank) {
+        sort();
+        return order[rank];
+    }
+
+    public Player player(int position) {
+        return players[position];
+    }
+
+    /*The cached ability score of the player at this position*/
+    public synchronized double score(int position) {
+        sort();
+        return scores[position];
+    }
+
+    /*Every position, best first*/
+    public synchronized int[] order() {
+        sort();
+        int[] copy = new int[count];
+        System.arraycopy(order, 0, copy, 0, count);
+        return copy;
+    }
+
+    /*Positions of the n best players, best first*/
+    public synchronized int[] top(int n) {
+        sort();
+        int[] top = new int[Math.min(n, count)];
+        System.arraycopy(order, 0, top, 0, top.length);
+        return top;
+    }
+
+    /*Positions of the n worst players, worst first*/
+    public synchronized int[] bottom(int n) {
+        sort();
+        int[] bottom = new int[Math.min(n, count)];
+        for (int i = 0; i < bottom.length; i++) {
+            bottom[i] = order[count - 1 - i];
+        }
+        return bottom;
+    }
+
+    /*The gap between the average ability score of the best possible team of teamSize players and the worst possible
+    one, read off the two ends of the order (see Players.highDiscrepancy)*/
+    public synchronized double highDiscrepancy(int teamSize) {
+        sort();
+        int size = Math.min(teamSize, count);
+        if (size <= 0) {
+            return 0;
+        }
+        double top = 0;
+        double bottom = 0;
+        for (int i = 0; i < size; i++) {
+            top += scores[order[i]];
+            bottom += scores[order[count - 1 - i]];
+        }
+        return (top / size) - (bottom / size);
+    }
+
+    /*True if the players at these positions have the same score and name. Such players sit next to each other in
+    the order*/
+    public synchronized boolean sameScoreAndName(int a, int b) {
+        sort();
+        return scores[a] == scores[b] && players[a].compareTo(players[b]) == 0;
+    }
+
+    private void sort() {
+        if (!dirty) {
+            return;
+        }
+        PlayerTable table = PlayerTable.of(players);
+        scores = table.abilityScores();
+        order = table.sortedByScore();
+        count = order.length;
+        dirty = false;
+    }
+
+    /*Binary search for the position's rank, or -(insertion point + 1) if it isn't in the order*/
+    private int find(int position) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = compare(order[middle], position);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /*The same order PlayerTable sorts by, with the position breaking ties like its stable sort does*/
+    private int compare(int a, int b) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b] ? -1 : 1;
+        }
+        int byLastName = players[a].getLastName().compareTo(players[b].getLastName());
+        if (byLastName != 0) {
+            return byLastName;
+        }
+        int byFirstName = players[a].getFirstName().compareTo(players[b].getFirstName());
+        return byFirstName != 0 ? byFirstName : Integer.compare(a, b);
+    }
+}
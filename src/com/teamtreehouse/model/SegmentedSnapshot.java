@@ -0,0 +1,791 @@
+package com.teamtreehouse.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+/*The league saved in segments, so a save only writes the parts of the league that changed. LeagueSnapshot writes the
+whole league every time, which for a big league means megabytes rewritten because one player was drafted.
+
+The league is cut into segments that are each written on their own:
+    -players: PLAYERS_PER_SEGMENT players of the player list each, by position
+    -teams: the teams whose names hash to the same one of TEAM_BUCKETS buckets, with their rosters. Players on a
+     roster are stored as their position in the player list
+    -waiting list: everyone waiting, in the order they came in
+Every segment uses the same columns as LeagueSnapshot (a string table, then name ids, heights and bit sets).
+
+Segments are appended to a data file and never changed once written. A small manifest lists where each current
+segment is in the data file, and a save is finished by writing a new manifest and renaming it over the old one, so the
+league on disk is always the one from the last finished save, even if the program stops halfway through writing.
+Segments that were replaced stay behind in the data file as garbage until there is more garbage than league; then the
+next save copies the current segments into a new data file and deletes the old one.
+
+What changed is told by the dirty flags on Player, Team (its Roster) and WaitingList, which loading and saving clear.
+A segment is written again if anything in it is dirty or it holds a different number of players or teams than the
+manifest says. Finding out is a quick pass over the flags; encoding, writing and syncing - the part of a save that
+takes the time - is only done for the segments that changed.
+
+Each segment is compressed on its own with a BlockCodec (lz4 unless -Dleague.codec picks another), so a segment is
+still written and read without the ones around it. The manifest records the codec and how long each segment is before
+and after compressing; a save with a different codec than the last one writes every segment into a new data file.
+Loading decompresses and decodes the player segments as tasks on a ForkJoinPool, then the team segments, which
+point into the player list.*/
+public class SegmentedSnapshot {
+    public static final String FILE_NAME = "league.manifest";
+    static final int PLAYERS_PER_SEGMENT = 4096;
+    static final int TEAM_BUCKETS = 256;
+    static final byte PLAYERS = 0;
+    static final byte TEAMS = 1;
+    static final byte WAITING = 2;
+    private static final int MANIFEST_MAGIC = 0x534D414E;
+    private static final int DATA_MAGIC = 0x53444154;
+    private static final int VERSION = 2;
+    private static final int DATA_HEADER_BYTES = 8;
+    private static final long COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private SegmentedSnapshot() {
+    }
+
+    /*Where one segment is in the data file, how long it is there and once decompressed, and how many players (or
+    teams) it holds. The CRC is of the bytes as they are in the file*/
+    static class Entry {
+        final byte kind;
+        final int number;
+        final long offset;
+        final int length;
+        final int rawLength;
+        final int count;
+        final int crc;
+
+        Entry(byte kind, int number, long offset, int length, int rawLength, int count, int crc) {
+            this.kind = kind;
+            this.number = number;
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.count = count;
+            this.crc = crc;
+        }
+    }
+
+    /*The manifest: which data file holds the league, how much of it belongs to finished saves, which codec its
+    segments are compressed with and where each segment is. Entries are kept in kind, then number order. Version 1
+    manifests, from before segments were compressed, are read as using no codec*/
+    static class Manifest {
+        final long journalSequence;
+        final long generation;
+        final long dataEnd;
+        final int playerCount;
+        final boolean priority;
+        final byte codec;
+        final NavigableMap<Long, Entry> entries;
+
+        Manifest(long journalSequence, long generation, long dataEnd, int playerCount, boolean priority, byte codec,
+                 NavigableMap<Long, Entry> entries) {
+            this.journalSequence = journalSequence;
+            this.generation = generation;
+            this.dataEnd = dataEnd;
+            this.playerCount = playerCount;
+            this.priority = priority;
+            this.codec = codec;
+            this.entries = entries;
+        }
+
+        static Manifest read(Path path) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            try {
+                if (buffer.getInt() != MANIFEST_MAGIC) {
+                    throw new IOException(path + " is not a league manifest.");
+                }
+                int version = buffer.getInt();
+                if (version != 1 && version != VERSION) {
+                    throw new IOException("Unsupported manifest version " + version + ".");
+                }
+                long journalSequence = buffer.getLong();
+                long generation = buffer.getLong();
+                long dataEnd = buffer.getLong();
+                int playerCount = buffer.getInt();
+                boolean priority = buffer.get() == 1;
+                byte codec = version == 1 ? BlockCodec.NONE.id() : buffer.get();
+                // An unknown codec fails here rather than on the first segment read
+                BlockCodec.forId(codec);
+                NavigableMap<Long, Entry> entries = new TreeMap<>();
+                for (int i = buffer.getInt(); i > 0; i--) {
+                    byte kind = buffer.get();
+                    int number = buffer.getInt();
+                    long offset = buffer.getLong();
+                    int length = buffer.getInt();
+                    int rawLength = version == 1 ? length : buffer.getInt();
+                    Entry entry = new Entry(kind, number, offset, length, rawLength, buffer.getInt(), buffer.getInt());
+                    entries.put(key(entry.kind, entry.number), entry);
+                }
+                return new Manifest(journalSequence, generation, dataEnd, playerCount, priority, codec, entries);
+            } catch (RuntimeException e) {
+                throw new IOException(path + " is damaged and could not be read.", e);
+            }
+        }
+
+        /*Writes the manifest next to the path and renames it into place. Returns the number of bytes written*/
+        long write(Path path) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(42 + 29 * entries.size());
+            buffer.putInt(MANIFEST_MAGIC).putInt(VERSION).putLong(journalSequence).putLong(generation)
+                    .putLong(dataEnd).putInt(playerCount).put((byte) (priority ? 1 : 0)).put(codec)
+                    .putInt(entries.size());
+            for (Entry entry : entries.values()) {
+                buffer.put(entry.kind).putInt(entry.number).putLong(entry.offset).putInt(entry.length)
+                        .putInt(entry.rawLength).putInt(entry.count).putInt(entry.crc);
+            }
+            buffer.flip();
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return buffer.limit();
+        }
+
+        Entry get(byte kind, int number) {
+            return entries.get(key(kind, number));
+        }
+
+        /*Every segment of one kind, by number*/
+        Collection<Entry> entries(byte kind) {
+            return entries.subMap(key(kind, 0), true, key(kind, Integer.MAX_VALUE), true).values();
+        }
+
+        /*The finished part of the data file, mapped read only*/
+        ByteBuffer map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(dataPath(path, generation), StandardOpenOption.READ)) {
+                if (channel.size() < dataEnd) {
+                    throw new IOException(path + " lists more segments than its data file holds.");
+                }
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataEnd);
+                if (data.getInt(0) != DATA_MAGIC) {
+                    throw new IOException(dataPath(path, generation) + " is not a league data file.");
+                }
+                return data;
+            }
+        }
+
+        /*One segment of the mapped data file, checked against its CRC and decompressed. With no codec the segment is
+        read in place*/
+        Segment segment(ByteBuffer data, Entry entry) throws IOException {
+            ByteBuffer slice = data.duplicate();
+            slice.limit((int) entry.offset + entry.length).position((int) entry.offset);
+            slice = slice.slice();
+            CRC32 crc = new CRC32();
+            crc.update(slice.duplicate());
+            if ((int) crc.getValue() != entry.crc) {
+                throw new IOException("A segment of the saved league is damaged.");
+            }
+            return new Segment(BlockCodec.forId(codec).decompress(slice, entry.rawLength));
+        }
+    }
+
+    /*One segment read in place. Columns are found when the segment is opened; strings and players are decoded only
+    when asked for, unless decodeStrings() decodes the whole string table at once for reading every player*/
+    static class Segment {
+        private final ByteBuffer buffer;
+        private final Column stringOffsets;
+        private final int stringBytes;
+        private final Column firstNames;
+        private final Column lastNames;
+        private final Column heights;
+        private final int experienceWords;
+        private final int experience;
+        private final int draftedWords;
+        private final int drafted;
+        private final Column teamNames;
+        private final Column coaches;
+        private final Column rosterSizes;
+        private final Column rosterRefs;
+        private int[] rosterStarts;
+        private String[] strings;
+
+        Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+            stringOffsets = new Column(buffer);
+            stringBytes = buffer.position();
+            buffer.position(stringBytes + stringOffsets.get(stringOffsets.count - 1));
+            firstNames = new Column(buffer);
+            lastNames = new Column(buffer);
+            heights = new Column(buffer);
+            experienceWords = buffer.getInt();
+            experience = buffer.position();
+            buffer.position(experience + 8 * experienceWords);
+            draftedWords = buffer.getInt();
+            drafted = buffer.position();
+            buffer.position(drafted + 8 * draftedWords);
+            teamNames = new Column(buffer);
+            coaches = new Column(buffer);
+            rosterSizes = new Column(buffer);
+            rosterRefs = new Column(buffer);
+        }
+
+        void decodeStrings() {
+            String[] decoded = new String[stringOffsets.count - 1];
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = string(i);
+            }
+            strings = decoded;
+        }
+
+        int playerCount() {
+            return firstNames.count;
+        }
+
+        Player player(int index) {
+            return new Player(string(firstNames.get(index)), string(lastNames.get(index)), heights.get(index),
+                    bit(experience, experienceWords, index), bit(drafted, draftedWords, index));
+        }
+
+        int teamCount() {
+            return teamNames.count;
+        }
+
+        String teamName(int team) {
+            return string(teamNames.get(team));
+        }
+
+        String coach(int team) {
+            return string(coaches.get(team));
+        }
+
+        /*The team's roster as references: a player list position times two, or for a player who isn't in the
+        player list, their index among this segment's own players times two plus one*/
+        int[] roster(int team) {
+            if (rosterStarts == null) {
+                int[] starts = new int[rosterSizes.count + 1];
+                for (int i = 0; i < rosterSizes.count; i++) {
+                    starts[i + 1] = starts[i] + rosterSizes.get(i);
+                }
+                rosterStarts = starts;
+            }
+            int[] refs = new int[rosterStarts[team + 1] - rosterStarts[team]];
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = rosterRefs.get(rosterStarts[team] + i);
+            }
+            return refs;
+        }
+
+        /*Bit sets are stored as BitSet.toLongArray() words, which leave off trailing words that are all zero*/
+        private boolean bit(int words, int wordCount, int index) {
+            int word = index >>> 6;
+            return word < wordCount && (buffer.getLong(words + 8 * word) & (1L << (index & 63))) != 0;
+        }
+
+        private String string(int id) {
+            if (strings != null) {
+                return strings[id];
+            }
+            int from = stringOffsets.get(id);
+            byte[] bytes = new byte[stringOffsets.get(id + 1) - from];
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringBytes + from);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /*A column as LeagueSnapshot.putColumn writes it: a count, a width in bytes and then the values, read one at a
+    time*/
+    private static class Column {
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int width;
+        private final int start;
+
+        /*Reads the column's count and width at the buffer's position and moves the position past the values*/
+        private Column(ByteBuffer buffer) {
+            this.buffer = buffer;
+            count = buffer.getInt();
+            width = buffer.get();
+            start = buffer.position();
+            buffer.position(start + count * width);
+        }
+
+        private int get(int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Value " + i + " of a column of " + count);
+            }
+            if (width == 0) {
+                return i;
+            }
+            int value = 0;
+            for (int j = 0, at = start + i * width; j < width; j++) {
+                value = (value << 8) | (buffer.get(at + j) & 0xFF);
+            }
+            return value;
+        }
+    }
+
+    /*A segment about to be written: either newly encoded and compressed, or one from the last save that is still
+    current*/
+    private static class Pending {
+        private final byte kind;
+        private final int number;
+        private final int count;
+        private final byte[] bytes;
+        private final int rawLength;
+        private final Entry kept;
+
+        private Pending(byte kind, int number, int count, byte[] raw, BlockCodec codec, Entry kept) {
+            this.kind = kind;
+            this.number = number;
+            this.count = count;
+            this.bytes = raw == null ? null : codec.compress(raw);
+            this.rawLength = raw == null ? kept.rawLength : raw.length;
+            this.kept = kept;
+        }
+
+        private int length() {
+            return bytes != null ? bytes.length : kept.length;
+        }
+    }
+
+    /*Saves the league with the codec picked with -Dleague.codec, finding the position of a rostered player in the
+    player list with a map built the first time one is needed*/
+    public static long write(Path path, LeagueSnapshot league) throws IOException {
+        return write(path, league, BlockCodec.configured());
+    }
+
+    public static long write(Path path, LeagueSnapshot league, BlockCodec codec) throws IOException {
+        Player[] players = league.getPlayers();
+        Map<Player, Integer> positions = new HashMap<>();
+        return write(path, league, player -> {
+            if (positions.isEmpty()) {
+                for (int i = players.length - 1; i >= 0; i--) {
+                    positions.put(players[i], i);
+                }
+            }
+            Integer position = positions.get(player);
+            return position == null ? -1 : position;
+        }, codec);
+    }
+
+    public static long write(Path path, LeagueSnapshot league, ToIntFunction<Player> positionOf) throws IOException {
+        return write(path, league, positionOf, BlockCodec.configured());
+    }
+
+    /*Saves the league, writing only the segments that changed since the manifest at the path was written, and clears
+    the dirty flags of everything written. positionOf gives a rostered player's position in the player list, or -1
+    if they aren't in it. Segments are compressed with the codec; if the last save used another one, every segment is
+    written again. Returns the number of bytes written*/
+    public static long write(Path path, LeagueSnapshot league, ToIntFunction<Player> positionOf, BlockCodec codec)
+            throws IOException {
+        Manifest old = usable(path);
+        boolean recode = old != null && old.codec != codec.id();
+        Manifest reused = recode ? null : old;
+        Player[] players = league.getPlayers();
+        List<Pending> segments = new ArrayList<>();
+
+        for (int number = 0; number * PLAYERS_PER_SEGMENT < players.length; number++) {
+            int from = number * PLAYERS_PER_SEGMENT;
+            int to = Math.min(players.length, from + PLAYERS_PER_SEGMENT);
+            Entry entry = reused == null ? null : reused.get(PLAYERS, number);
+            boolean dirty = entry == null || entry.count != to - from;
+            for (int i = from; i < to && !dirty; i++) {
+                dirty = players[i].isDirty();
+            }
+            List<Player> segment = Arrays.asList(players).subList(from, to);
+            segments.add(new Pending(PLAYERS, number, to - from,
+                    dirty ? encode(segment, new ArrayList<>(), new ArrayList<>(), positionOf) : null,
+                    codec, dirty ? null : entry));
+        }
+
+        List<List<Team>> bucketTeams = new ArrayList<>(TEAM_BUCKETS);
+        List<List<Set<Player>>> bucketRosters = new ArrayList<>(TEAM_BUCKETS);
+        for (int bucket = 0; bucket < TEAM_BUCKETS; bucket++) {
+            bucketTeams.add(new ArrayList<>());
+            bucketRosters.add(new ArrayList<>());
+        }
+        for (Map.Entry<Team, Set<Player>> team : league.getTeams().entrySet()) {
+            int bucket = bucket(team.getKey().getName());
+            bucketTeams.get(bucket).add(team.getKey());
+            bucketRosters.get(bucket).add(team.getValue());
+        }
+        for (int bucket = 0; bucket < TEAM_BUCKETS; bucket++) {
+            List<Team> teams = bucketTeams.get(bucket);
+            if (teams.isEmpty()) {
+                continue;
+            }
+            Entry entry = reused == null ? null : reused.get(TEAMS, bucket);
+            boolean dirty = entry == null || entry.count != teams.size();
+            for (int i = 0; i < teams.size() && !dirty; i++) {
+                dirty = dirty(teams.get(i), bucketRosters.get(bucket).get(i));
+            }
+            segments.add(new Pending(TEAMS, bucket, teams.size(),
+                    dirty ? encode(new ArrayList<>(), teams, bucketRosters.get(bucket), positionOf) : null,
+                    codec, dirty ? null : entry));
+        }
+
+        Queue<Player> waitingList = league.getWaitingList();
+        boolean priority = waitingList instanceof WaitingList && ((WaitingList) waitingList).isPriority();
+        if (!waitingList.isEmpty()) {
+            List<Player> waiting = new ArrayList<>(waitingList);
+            Entry entry = reused == null ? null : reused.get(WAITING, 0);
+            boolean dirty = entry == null || entry.count != waiting.size() || !(waitingList instanceof WaitingList)
+                    || ((WaitingList) waitingList).isDirty();
+            segments.add(new Pending(WAITING, 0, waiting.size(),
+                    dirty ? encode(waiting, new ArrayList<>(), new ArrayList<>(), positionOf) : null,
+                    codec, dirty ? null : entry));
+        }
+
+        long live = 0;
+        long added = 0;
+        for (Pending segment : segments) {
+            live += segment.length();
+            if (segment.bytes != null) {
+                added += segment.length();
+            }
+        }
+        boolean rewrite = old == null || recode
+                || old.dataEnd + added - DATA_HEADER_BYTES - live > Math.max(COMPACT_MIN_BYTES, live);
+        long generation = old == null ? 1 : rewrite ? old.generation + 1 : old.generation;
+        Path data = dataPath(path, generation);
+        long written = 0;
+        long offset;
+        NavigableMap<Long, Entry> entries = new TreeMap<>();
+        ByteBuffer oldData = rewrite && reused != null ? reused.map(path) : null;
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (rewrite) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_BYTES).putInt(DATA_MAGIC).putInt(VERSION);
+                header.flip();
+                offset = DATA_HEADER_BYTES;
+                written += writeFully(channel, header, 0);
+            } else {
+                channel.truncate(old.dataEnd);
+                offset = old.dataEnd;
+            }
+            for (Pending segment : segments) {
+                Entry entry;
+                if (segment.bytes != null) {
+                    CRC32 crc = new CRC32();
+                    crc.update(segment.bytes);
+                    entry = new Entry(segment.kind, segment.number, offset, segment.bytes.length, segment.rawLength,
+                            segment.count, (int) crc.getValue());
+                    written += writeFully(channel, ByteBuffer.wrap(segment.bytes), offset);
+                    offset += entry.length;
+                } else if (rewrite) {
+                    ByteBuffer copy = oldData.duplicate();
+                    copy.limit((int) segment.kept.offset + segment.kept.length).position((int) segment.kept.offset);
+                    entry = new Entry(segment.kind, segment.number, offset, segment.kept.length,
+                            segment.kept.rawLength, segment.count, segment.kept.crc);
+                    written += writeFully(channel, copy, offset);
+                    offset += entry.length;
+                } else {
+                    entry = segment.kept;
+                }
+                entries.put(key(entry.kind, entry.number), entry);
+            }
+            channel.force(false);
+        }
+        written += new Manifest(league.getJournalSequence(), generation, offset, players.length, priority, codec.id(),
+                entries).write(path);
+        if (old != null && generation != old.generation) {
+            Files.deleteIfExists(dataPath(path, old.generation));
+        }
+
+        for (Pending segment : segments) {
+            if (segment.bytes == null) {
+                continue;
+            }
+            if (segment.kind == PLAYERS) {
+                int from = segment.number * PLAYERS_PER_SEGMENT;
+                for (int i = from; i < from + segment.count; i++) {
+                    players[i].notDirty();
+                }
+            } else if (segment.kind == TEAMS) {
+                for (int i = 0; i < segment.count; i++) {
+                    bucketTeams.get(segment.number).get(i).notDirty();
+                    Set<Player> roster = bucketRosters.get(segment.number).get(i);
+                    if (roster instanceof Roster) {
+                        ((Roster) roster).notDirty();
+                    }
+                }
+            } else if (waitingList instanceof WaitingList) {
+                ((WaitingList) waitingList).notDirty();
+            }
+        }
+        return written;
+    }
+
+    public static LeagueSnapshot read(Path path) throws IOException {
+        return read(path, ForkJoinPool.commonPool());
+    }
+
+    /*Reads the whole league back. The player segments are decompressed and decoded as tasks on the pool, each into
+    its own part of the player list; then the team segments and the waiting list, which only point into it*/
+    public static LeagueSnapshot read(Path path, ForkJoinPool pool) throws IOException {
+        Manifest manifest = Manifest.read(path);
+        ByteBuffer data = manifest.map(path);
+        try {
+            Player[] players = new Player[manifest.playerCount];
+            List<SegmentTask<Void>> playerTasks = new ArrayList<>();
+            for (Entry entry : manifest.entries(PLAYERS)) {
+                playerTasks.add(new SegmentTask<>(manifest, data, entry, segment -> {
+                    int from = entry.number * PLAYERS_PER_SEGMENT;
+                    for (int i = 0; i < segment.playerCount(); i++) {
+                        players[from + i] = segment.player(i);
+                        players[from + i].notDirty();
+                    }
+                    return null;
+                }));
+            }
+            invokeAll(pool, playerTasks);
+            for (Player player : players) {
+                if (player == null) {
+                    throw new IOException(path + " is missing part of the player list.");
+                }
+            }
+            List<SegmentTask<List<Team>>> teamTasks = new ArrayList<>();
+            for (Entry entry : manifest.entries(TEAMS)) {
+                teamTasks.add(new SegmentTask<>(manifest, data, entry, segment -> {
+                    Player[] own = players(segment);
+                    List<Team> teams = new ArrayList<>(segment.teamCount());
+                    for (int i = 0; i < segment.teamCount(); i++) {
+                        Team team = new Team(segment.teamName(i), segment.coach(i));
+                        for (int ref : segment.roster(i)) {
+                            team.playerSet.add((ref & 1) == 0 ? players[ref >>> 1] : own[ref >>> 1]);
+                        }
+                        team.notDirty();
+                        teams.add(team);
+                    }
+                    return teams;
+                }));
+            }
+            List<SegmentTask<Player[]>> waitingTasks = new ArrayList<>();
+            for (Entry entry : manifest.entries(WAITING)) {
+                waitingTasks.add(new SegmentTask<>(manifest, data, entry, SegmentedSnapshot::players));
+            }
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(teamTasks);
+            tasks.addAll(waitingTasks);
+            invokeAll(pool, tasks);
+            List<Team> read = new ArrayList<>();
+            for (SegmentTask<List<Team>> task : teamTasks) {
+                read.addAll(task.join());
+            }
+            Collections.sort(read);
+            Map<Team, Set<Player>> teams = new TreeMap<>();
+            for (Team team : read) {
+                teams.put(team, team.playerSet);
+            }
+            WaitingList waitingList = new WaitingList(manifest.priority);
+            for (SegmentTask<Player[]> task : waitingTasks) {
+                waitingList.addAll(Arrays.asList(task.join()));
+            }
+            waitingList.notDirty();
+            return new LeagueSnapshot(players, teams, waitingList, manifest.journalSequence);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            throw new IOException(path + " is damaged and could not be read.", e);
+        }
+    }
+
+    /*Deletes the manifest and its data file*/
+    public static void delete(Path path) throws IOException {
+        if (Files.exists(path)) {
+            try {
+                Files.deleteIfExists(dataPath(path, Manifest.read(path).generation));
+            } catch (IOException e) {
+                // A damaged manifest still goes; its data file is left behind
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    /*Which bucket of teams a team's segment is*/
+    static int bucket(String teamName) {
+        return (teamName.hashCode() & Integer.MAX_VALUE) % TEAM_BUCKETS;
+    }
+
+    /*"league.manifest" keeps its segments in "league.<generation>.segments"*/
+    static Path dataPath(Path manifest, long generation) {
+        String name = manifest.getFileName().toString();
+        String base = name.endsWith(".manifest") ? name.substring(0, name.length() - ".manifest".length()) : name;
+        return manifest.resolveSibling(base + "." + generation + ".segments");
+    }
+
+    private static long key(byte kind, int number) {
+        return ((long) kind << 32) | (number & 0xFFFFFFFFL);
+    }
+
+    /*The last manifest, if there is one that can be appended to. Anything wrong with it means the next save writes
+    every segment into a new data file instead*/
+    private static Manifest usable(Path path) {
+        try {
+            Manifest manifest = Manifest.read(path);
+            return Files.size(dataPath(path, manifest.generation)) >= manifest.dataEnd ? manifest : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean dirty(Team team, Set<Player> roster) {
+        return team.isDirty() || roster != team.playerSet && (!(roster instanceof Roster)
+                || ((Roster) roster).isDirty());
+    }
+
+    /*Runs the tasks on the pool and waits for all of them. A task that failed throws its exception here*/
+    private static void invokeAll(ForkJoinPool pool, List<? extends ForkJoinTask<?>> tasks) {
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
+            }
+        });
+    }
+
+    /*Decompresses and decodes one segment, then hands it to what reads it. IOExceptions come out unchecked*/
+    private static class SegmentTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+        private final Manifest manifest;
+        private final ByteBuffer data;
+        private final Entry entry;
+        private final Function<Segment, T> reader;
+
+        SegmentTask(Manifest manifest, ByteBuffer data, Entry entry, Function<Segment, T> reader) {
+            this.manifest = manifest;
+            this.data = data;
+            this.entry = entry;
+            this.reader = reader;
+        }
+
+        @Override
+        protected T compute() {
+            try {
+                Segment segment = manifest.segment(data, entry);
+                segment.decodeStrings();
+                return reader.apply(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*The segment's own players, the ones it stores whole*/
+    private static Player[] players(Segment segment) {
+        Player[] players = new Player[segment.playerCount()];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = segment.player(i);
+            players[i].notDirty();
+        }
+        return players;
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /*Lays out one segment: the players it stores whole, then the teams with their rosters. A rostered player who is
+    in the player list is stored as their position; anyone else is added to the segment's own players*/
+    private static byte[] encode(List<Player> players, List<Team> teams, List<Set<Player>> rosters,
+                                 ToIntFunction<Player> positionOf) {
+        List<Player> own = new ArrayList<>(players);
+        Map<Player, Integer> ownIds = new IdentityHashMap<>();
+        int rosterTotal = 0;
+        for (Set<Player> roster : rosters) {
+            rosterTotal += roster.size();
+        }
+        int[] teamNames = new int[teams.size()];
+        int[] coaches = new int[teams.size()];
+        int[] rosterSizes = new int[teams.size()];
+        int[] rosterRefs = new int[rosterTotal];
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        for (int i = 0, ref = 0; i < teams.size(); i++) {
+            teamNames[i] = intern(teams.get(i).getName(), stringIds, strings);
+            coaches[i] = intern(teams.get(i).getCoach(), stringIds, strings);
+            rosterSizes[i] = rosters.get(i).size();
+            for (Player player : rosters.get(i)) {
+                int position = positionOf.applyAsInt(player);
+                if (position >= 0) {
+                    rosterRefs[ref++] = position << 1;
+                } else {
+                    Integer id = ownIds.get(player);
+                    if (id == null) {
+                        id = own.size();
+                        ownIds.put(player, id);
+                        own.add(player);
+                    }
+                    rosterRefs[ref++] = id << 1 | 1;
+                }
+            }
+        }
+        int[] firstNames = new int[own.size()];
+        int[] lastNames = new int[own.size()];
+        int[] heights = new int[own.size()];
+        BitSet experience = new BitSet();
+        BitSet drafted = new BitSet();
+        for (int i = 0; i < own.size(); i++) {
+            Player player = own.get(i);
+            firstNames[i] = intern(player.getFirstName(), stringIds, strings);
+            lastNames[i] = intern(player.getLastName(), stringIds, strings);
+            heights[i] = player.getHeightInInches();
+            experience.set(i, player.isPreviousExperience());
+            drafted.set(i, player.isDrafted());
+        }
+        int[] stringOffsets = new int[strings.size() + 1];
+        for (int i = 0; i < strings.size(); i++) {
+            stringOffsets[i + 1] = stringOffsets[i] + strings.get(i).length;
+        }
+        long[] experienceWords = experience.toLongArray();
+        long[] draftedWords = drafted.toLongArray();
+
+        int[][] columns = {stringOffsets, firstNames, lastNames, heights, teamNames, coaches, rosterSizes,
+                rosterRefs};
+        int size = stringOffsets[strings.size()] + 4 * 2 + 8 * (experienceWords.length + draftedWords.length);
+        for (int[] column : columns) {
+            size += 5 + column.length * LeagueSnapshot.width(column);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        LeagueSnapshot.putColumn(buffer, stringOffsets);
+        for (byte[] string : strings) {
+            buffer.put(string);
+        }
+        LeagueSnapshot.putColumn(buffer, firstNames);
+        LeagueSnapshot.putColumn(buffer, lastNames);
+        LeagueSnapshot.putColumn(buffer, heights);
+        LeagueSnapshot.putLongs(buffer, experienceWords);
+        LeagueSnapshot.putLongs(buffer, draftedWords);
+        LeagueSnapshot.putColumn(buffer, teamNames);
+        LeagueSnapshot.putColumn(buffer, coaches);
+        LeagueSnapshot.putColumn(buffer, rosterSizes);
+        LeagueSnapshot.putColumn(buffer, rosterRefs);
+        return buffer.array();
+    }
+
+    private static int intern(String string, Map<String, Integer> ids, List<byte[]> strings) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+}
@@ -0,0 +1,327 @@
+package com.teamtreehouse.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/*Improves the greedy rosters by swapping one player at a time between the highest and lowest scoring teams. A team's
+score is the one the fairness report uses, average height + percentage of experienced players, which for a team is
+(sum of height + 100 for each experienced player) / roster size. Each team's sum is cached, so trying a swap is a
+couple of additions and divisions, without touching the rest of the roster.
+
+Each round pairs the teams up from the outside in, highest with lowest, second highest with second lowest and so on,
+and makes the best swap in every pair. The pairs share no teams, so all of their swaps can be made in the same round.
+When none of the pairs can improve, the highest team is tried against every other team, and every other team against
+the lowest. A swap only counts if it brings the two teams closer together without pushing either past the current
+best or worst score, so the gap for the whole league never grows. Refining stops when no swap helps or the time
+budget runs out.
+
+In parallel mode the pairs, and the search over the other teams, are split across a ForkJoinPool, and that search
+takes the best swap found anywhere instead of the first one found.*/
+public class SwapRefiner implements TeamRefiner {
+    private static final int PARTNERS_PER_TASK = 256;
+    private static final int PAIRS_PER_TASK = 128;
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    private static final double EPSILON = 1e-9;
+
+    private final long budgetNanos;
+    private final boolean parallel;
+    private final ForkJoinPool pool;
+
+    public SwapRefiner(long budgetMillis, boolean parallel) {
+        this(budgetMillis, parallel, ForkJoinPool.commonPool());
+    }
+
+    public SwapRefiner(long budgetMillis, boolean parallel, ForkJoinPool pool) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.parallel = parallel;
+        this.pool = pool;
+    }
+
+    /*A swap of the player at slot a of team x with the player at slot b of team y*/
+    private static class Swap {
+        private final int x;
+        private final int y;
+        private final int a;
+        private final int b;
+        private final double gain;
+
+        Swap(int x, int y, int a, int b, double gain) {
+            this.x = x;
+            this.y = y;
+            this.a = a;
+            this.b = b;
+            this.gain = gain;
+        }
+
+        static Swap better(Swap first, Swap second) {
+            if (first == null) {
+                return second;
+            }
+            return second != null && second.gain > first.gain + EPSILON ? second : first;
+        }
+    }
+
+    private Team[] teams;
+    private Player[][] members;
+    private int[][] points;
+    private long[] sums;
+    private long deadline;
+    private double low;
+    private double high;
+
+    @Override
+    public synchronized double refine(Team[] teams) {
+        deadline = System.nanoTime() + budgetNanos;
+        this.teams = teams;
+        members = new Player[teams.length][];
+        points = new int[teams.length][];
+        sums = new long[teams.length];
+        for (int t = 0; t < teams.length; t++) {
+            members[t] = teams[t].playerSet.toArray(new Player[0]);
+            points[t] = new int[members[t].length];
+            for (int i = 0; i < members[t].length; i++) {
+                points[t][i] = points(members[t][i]);
+                sums[t] += points[t][i];
+            }
+        }
+        double before = spread();
+        while (System.nanoTime() < deadline) {
+            int highest = -1;
+            int lowest = -1;
+            for (int t = 0; t < teams.length; t++) {
+                if (members[t].length == 0) {
+                    continue;
+                }
+                if (highest < 0 || score(t) > score(highest)) {
+                    highest = t;
+                }
+                if (lowest < 0 || score(t) < score(lowest)) {
+                    lowest = t;
+                }
+            }
+            if (highest < 0 || score(highest) - score(lowest) < EPSILON) {
+                break;
+            }
+            high = score(highest);
+            low = score(lowest);
+            if (swapPairs() > 0) {
+                continue;
+            }
+            Swap swap = bestSwap(highest, lowest);
+            if (swap == null) {
+                swap = parallel
+                        ? pool.invoke(new PartnerTask(highest, lowest, 0, teams.length))
+                        : firstSwap(highest, lowest);
+            }
+            if (swap == null) {
+                break;
+            }
+            apply(swap);
+        }
+        double after = spread();
+        this.teams = null;
+        members = null;
+        points = null;
+        sums = null;
+        return before - after;
+    }
+
+    /*Pairs the teams from the outside in and makes the best swap in each pair. Returns how many swaps were made*/
+    private int swapPairs() {
+        Integer[] byScore = new Integer[teams.length];
+        int count = 0;
+        for (int t = 0; t < teams.length; t++) {
+            if (members[t].length != 0) {
+                byScore[count++] = t;
+            }
+        }
+        Arrays.sort(byScore, 0, count, (a, b) -> Double.compare(score(b), score(a)));
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = byScore[i];
+        }
+        Swap[] swaps = new Swap[count / 2];
+        PairTask task = new PairTask(order, swaps, 0, swaps.length);
+        if (parallel) {
+            pool.invoke(task);
+        } else {
+            task.compute();
+        }
+        int made = 0;
+        for (Swap swap : swaps) {
+            if (swap != null) {
+                apply(swap);
+                made++;
+            }
+        }
+        return made;
+    }
+
+    /*The points a player adds to their team's sum: height, plus 100 if they have played before*/
+    private static int points(Player player) {
+        return player.getHeightInInches() + (player.isPreviousExperience() ? 100 : 0);
+    }
+
+    private double score(int team) {
+        return (double) sums[team] / members[team].length;
+    }
+
+    private double spread() {
+        double max = Double.NEGATIVE_INFINITY;
+        double min = Double.POSITIVE_INFINITY;
+        for (int t = 0; t < members.length; t++) {
+            if (members[t].length != 0) {
+                max = Math.max(max, score(t));
+                min = Math.min(min, score(t));
+            }
+        }
+        return max < min ? 0 : max - min;
+    }
+
+    /*Tries the highest team against each other team, then each other team against the lowest, and takes the first
+    swap that helps*/
+    private Swap firstSwap(int highest, int lowest) {
+        for (int t = 0; t < teams.length; t++) {
+            if (t % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+                return null;
+            }
+            Swap swap = partnerSwap(highest, lowest, t);
+            if (swap != null) {
+                return swap;
+            }
+        }
+        return null;
+    }
+
+    private Swap partnerSwap(int highest, int lowest, int partner) {
+        if (members[partner].length == 0 || partner == highest || partner == lowest) {
+            return null;
+        }
+        return Swap.better(bestSwap(highest, partner), bestSwap(partner, lowest));
+    }
+
+    /*The swap between team x (scoring at least as high as y) and team y that closes the gap between them the most,
+    or null if none does. Gains are measured as the drop in the squared gap, so with equal roster sizes (where the
+    two scores always add up to the same amount) a swap never undoes an earlier one*/
+    private Swap bestSwap(int x, int y) {
+        int xSize = members[x].length;
+        int ySize = members[y].length;
+        double gap = score(x) - score(y);
+        if (gap < EPSILON) {
+            return null;
+        }
+        Swap best = null;
+        double bestGain = EPSILON;
+        for (int a = 0; a < xSize; a++) {
+            int aPoints = points[x][a];
+            for (int b = 0; b < ySize; b++) {
+                int bPoints = points[y][b];
+                if (bPoints >= aPoints) {
+                    continue;
+                }
+                double newX = (double) (sums[x] - aPoints + bPoints) / xSize;
+                double newY = (double) (sums[y] - bPoints + aPoints) / ySize;
+                if (newX < low || newX > high || newY < low || newY > high) {
+                    continue;
+                }
+                double newGap = newX - newY;
+                double gain = gap * gap - newGap * newGap;
+                if (gain > bestGain && fits(x, y, a, b)) {
+                    bestGain = gain;
+                    best = new Swap(x, y, a, b, gain);
+                }
+            }
+        }
+        return best;
+    }
+
+    /*Rosters drop a player with the same name as one already on them, so a swap that would do that is skipped*/
+    private boolean fits(int x, int y, int a, int b) {
+        return !teams[x].playerSet.contains(members[y][b]) && !teams[y].playerSet.contains(members[x][a]);
+    }
+
+    private void apply(Swap swap) {
+        Player fromX = members[swap.x][swap.a];
+        Player fromY = members[swap.y][swap.b];
+        teams[swap.x].removePlayer(fromX);
+        teams[swap.y].removePlayer(fromY);
+        teams[swap.x].addPlayer(fromY);
+        teams[swap.y].addPlayer(fromX);
+        int xPoints = points[swap.x][swap.a];
+        int yPoints = points[swap.y][swap.b];
+        members[swap.x][swap.a] = fromY;
+        members[swap.y][swap.b] = fromX;
+        points[swap.x][swap.a] = yPoints;
+        points[swap.y][swap.b] = xPoints;
+        sums[swap.x] += yPoints - xPoints;
+        sums[swap.y] += xPoints - yPoints;
+    }
+
+    /*Finds the best swap for one slice of the pairs, splitting in half until the slice is small enough. Each task only
+    writes its own part of the swaps array*/
+    private class PairTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] order;
+        private final Swap[] swaps;
+        private final int from;
+        private final int to;
+
+        PairTask(int[] order, Swap[] swaps, int from, int to) {
+            this.order = order;
+            this.swaps = swaps;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PAIRS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    swaps[i] = bestSwap(order[i], order[order.length - 1 - i]);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PairTask(order, swaps, from, middle), new PairTask(order, swaps, middle, to));
+            }
+        }
+    }
+
+    /*Finds the best swap between the highest or lowest team and one slice of the other teams, splitting in half
+    until the slice is small enough. Ties go to the lower team index, so the result doesn't depend on how the work
+    was split*/
+    private class PartnerTask extends RecursiveTask<Swap> {
+        private static final long serialVersionUID = 1L;
+        private final int highest;
+        private final int lowest;
+        private final int from;
+        private final int to;
+
+        PartnerTask(int highest, int lowest, int from, int to) {
+            this.highest = highest;
+            this.lowest = lowest;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Swap compute() {
+            if (to - from <= PARTNERS_PER_TASK) {
+                Swap best = null;
+                if (System.nanoTime() < deadline) {
+                    for (int t = from; t < to; t++) {
+                        best = Swap.better(best, partnerSwap(highest, lowest, t));
+                    }
+                }
+                return best;
+            }
+            int middle = (from + to) >>> 1;
+            PartnerTask right = new PartnerTask(highest, lowest, middle, to);
+            right.fork();
+            Swap left = new PartnerTask(highest, lowest, from, middle).compute();
+            return Swap.better(left, right.join());
+        }
+    }
+}
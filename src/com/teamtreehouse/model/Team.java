@@ -1,18 +1,22 @@
 package com.teamtreehouse.model;
 
 import java.io.Serializable;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 public class Team implements Comparable<Team>, Serializable {
+    /*The UID the first version of Team was given by default, kept so leagues it saved in teams.ser still load*/
+    private static final long serialVersionUID = 4181493455477580043L;
+    private static final Metrics.Counter PLAYERS_ADDED = Metrics.counter("team.playersAdded");
+    private static final Metrics.Counter PLAYERS_REMOVED = Metrics.counter("team.playersRemoved");
     private String name;
     private String coach;
     public Set<Player> playerSet;
+    private transient boolean saved;
 
     public Team (String name, String coach){
         this.name = name;
         this.coach = coach;
+        this.playerSet = new Roster();
     }
 
     public String getName(){
@@ -52,69 +56,74 @@ public class Team implements Comparable<Team>, Serializable {
         return result;
     }
 
-    public void addPlayer(Player player){
-        playerSet.add(player);
+    /*Returns false, and isn't counted, if someone with the same name is already on the roster*/
+    public boolean addPlayer(Player player){
+        if(!playerSet.add(player)){
+            return false;
+        }
+        PLAYERS_ADDED.increment();
+        return true;
     }
 
-    public void removePlayer(Player player){
-        playerSet.remove(player);
+    /*Returns false, and isn't counted, if the player wasn't on the roster*/
+    public boolean removePlayer(Player player){
+        if(!playerSet.remove(player)){
+            return false;
+        }
+        PLAYERS_REMOVED.increment();
+        return true;
     }
 
-    public double averageHeight(){
-        double total = 0;
-        for(Player player: playerSet){
-            total+=player.getHeightInInches();
+    /*True if the team is new or its roster has changed since the league was last saved or loaded. A roster that
+    isn't a Roster can't tell, so it always counts as changed*/
+    public boolean isDirty(){
+        return !saved || !(playerSet instanceof Roster) || ((Roster) playerSet).isDirty();
+    }
+
+    public void notDirty(){
+        saved = true;
+        if(playerSet instanceof Roster){
+            ((Roster) playerSet).notDirty();
         }
-        return total/playerSet.size();
     }
 
-    public double totalExperience(){
-        if(!playerSet.isEmpty()) {
-            double total = 0;
-            for (Player player : playerSet) {
-                if (player.isPreviousExperience()) {
-                    total++;
-                }
-            }
-            return total;
-        } else {
-            return 0;
+    /*The roster's running sums. Rosters created before Roster existed (or any other Set put in playerSet) are summed
+    once into a temporary Roster so the stats below still work on them*/
+    private Roster roster(){
+        if(playerSet instanceof Roster){
+            return (Roster) playerSet;
         }
+        return new Roster(playerSet);
+    }
+
+    public double averageHeight(){
+        Roster roster = roster();
+        return (double) roster.totalHeight()/roster.size();
+    }
+
+    public double totalExperience(){
+        return roster().totalExperience();
     }
 
     public double averageExperience() {
-        if (playerSet.isEmpty()) {
+        Roster roster = roster();
+        if (roster.isEmpty()) {
             return 0;
         } else {
-            return totalExperience() / playerSet.size();
+            return (double) roster.totalExperience() / roster.size();
         }
     }
 
     public double averageAbilityScore(){
-        if(playerSet.isEmpty()){
+        Roster roster = roster();
+        if(roster.isEmpty()){
             return 0;
         } else {
-            List<Double> scores = new LinkedList<>();
-            for (Player player : playerSet) {
-                scores.add(player.abilityScore());
-            }
-            double total = 0;
-            for (Double thisScore : scores) {
-                total += thisScore;
-            }
-            return total / scores.size();
+            return roster.totalAbilityScore() / roster.size();
         }
     }
 
     public double totalAbilityScore(){
-        if(playerSet.isEmpty()){
-            return 0;
-        } else {
-            double score = 0;
-            for(Player player: playerSet){
-                score+=player.abilityScore();
-            }
-            return score;
-        }
+        return roster().totalAbilityScore();
     }
 }
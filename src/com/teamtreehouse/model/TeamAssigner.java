@@ -0,0 +1,140 @@
+package com.teamtreehouse.model;
+
+/*Keeps the teams of a league in a binary heap ordered the way optimization fills them: lowest total ability score
+first, then smallest roster, then team name. Each team's total and roster size are cached
+here, so picking the lowest team is O(1) and giving it a player is O(log t) instead of re-sorting every team and
+re-summing every roster for each player.*/
+public class TeamAssigner {
+    private final Team[] teams;
+    private final double[] totals;
+    private final int[] sizes;
+    private final int[] heap;
+    private final int[] position;
+
+    /*Starts every team from the score and size of its current roster*/
+    public TeamAssigner(Team[] teams) {
+        this(teams, false);
+    }
+
+    /*When empty is true every team starts at zero and the teams' own rosters are never read. Used when the caller
+    only wants the assignment and will build the rosters itself*/
+    public TeamAssigner(Team[] teams, boolean empty) {
+        this.teams = teams;
+        totals = new double[teams.length];
+        sizes = new int[teams.length];
+        heap = new int[teams.length];
+        position = new int[teams.length];
+        for (int i = 0; i < teams.length; i++) {
+            if (!empty && teams[i].playerSet != null) {
+                totals[i] = teams[i].totalAbilityScore();
+                sizes[i] = teams[i].playerSet.size();
+            }
+            heap[i] = i;
+            position[i] = i;
+        }
+        for (int i = teams.length / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    public int size() {
+        return teams.length;
+    }
+
+    public Team team(int index) {
+        return teams[index];
+    }
+
+    public double total(int index) {
+        return totals[index];
+    }
+
+    public int rosterSize(int index) {
+        return sizes[index];
+    }
+
+    /*Index of the team that would get the next player*/
+    public int lowest() {
+        assert teams.length != 0;
+        return heap[0];
+    }
+
+    /*Gives a player with the given ability score to the lowest team and returns that team's index. The teams'
+    rosters are not touched*/
+    public int assign(double abilityScore) {
+        int team = lowest();
+        credit(team, abilityScore);
+        return team;
+    }
+
+    /*Records that a team's roster gained a player with the given ability score*/
+    public void credit(int index, double abilityScore) {
+        totals[index] += abilityScore;
+        sizes[index]++;
+        siftDown(position[index]);
+    }
+
+    /*Re-reads a team's roster after it was changed outside of this assigner*/
+    public void refresh(int index) {
+        update(index, teams[index].totalAbilityScore(), teams[index].playerSet.size());
+    }
+
+    /*Moves a team to its new place in the heap after its total or size changed*/
+    public void update(int index, double total, int size) {
+        totals[index] = total;
+        sizes[index] = size;
+        siftUp(position[index]);
+        siftDown(position[index]);
+    }
+
+    private void siftUp(int slot) {
+        int team = heap[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (compare(team, heap[parent]) >= 0) {
+                break;
+            }
+            place(heap[parent], slot);
+            slot = parent;
+        }
+        place(team, slot);
+    }
+
+    private void siftDown(int slot) {
+        int team = heap[slot];
+        int half = teams.length >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < teams.length && compare(heap[right], heap[child]) < 0) {
+                child = right;
+            }
+            if (compare(team, heap[child]) <= 0) {
+                break;
+            }
+            place(heap[child], slot);
+            slot = child;
+        }
+        place(team, slot);
+    }
+
+    private void place(int team, int slot) {
+        heap[slot] = team;
+        position[team] = slot;
+    }
+
+    /*Lowest total first, then smallest roster, then team name, read from the cached totals and sizes. Two teams with
+    the same name are told apart by their slot so the heap order is always total*/
+    private int compare(int a, int b) {
+        if (a == b || teams[a].equals(teams[b])) {
+            return 0;
+        } else if (totals[a] != totals[b]) {
+            return totals[a] < totals[b] ? -1 : 1;
+        } else if (sizes[a] != sizes[b]) {
+            return sizes[a] < sizes[b] ? -1 : 1;
+        } else {
+            int byName = teams[a].compareTo(teams[b]);
+            return byName != 0 ? byName : Integer.compare(a, b);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.teamtreehouse.model;
+
+/*A step that runs after Players.optimizeTeams has handed out every player, moving players between the finished
+rosters to make the teams fairer. Rosters are changed in place, so a refiner can only move players around, never add
+or drop one*/
+public interface TeamRefiner {
+    /*Returns how many points the gap between the best and worst teams' ability scores (as the fairness report
+    measures them) shrank. 0 means the rosters were left as they were*/
+    double refine(Team[] teams);
+}
@@ -0,0 +1,260 @@
+package com.teamtreehouse.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*The players waiting for a spot in the league. Any number of threads can add and take players at the same time
+without locking: registration desks adding late registrants while organizers replace players, say.
+
+A plain waiting list is first in, first out, kept in a ConcurrentLinkedQueue. A priority waiting list also keeps its
+players sorted by ability score in a ConcurrentSkipListMap, so poll(targetScore) can hand out the player who best
+fills a gap - the one whose score is closest to the player being replaced - in O(log n). poll() still takes the
+player who has waited longest. Players with the same score go out in the order they came in, so taking players from
+the same list in the same order always gives the same players (which the journal relies on when it is replayed).
+
+In a priority list every player is kept by arrival number in a second skip list, and whoever removes them from that
+one owns them, so the same player can't be taken twice even when poll() and poll(targetScore) race for them. A player
+is added to that list first and taken out of it first, so the score list never holds a player that can't be taken
+for longer than it takes to clean them out.*/
+public class WaitingList extends AbstractQueue<Player> {
+    private final boolean priority;
+    private final Queue<Player> arrivals;
+    private final ConcurrentSkipListMap<Long, Entry> byArrival;
+    private final ConcurrentSkipListMap<Entry, Entry> byScore;
+    private final AtomicLong nextArrival = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean saved;
+
+    /*A waiting player in a priority list, ordered by ability score, then by arrival*/
+    private static class Entry implements Comparable<Entry> {
+        private final Player player;
+        private final double score;
+        private final long arrival;
+
+        private Entry(Player player, double score, long arrival) {
+            this.player = player;
+            this.score = score;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int byScore = Double.compare(score, o.score);
+            return byScore != 0 ? byScore : Long.compare(arrival, o.arrival);
+        }
+    }
+
+    /*A first in, first out waiting list*/
+    public WaitingList() {
+        this(false);
+    }
+
+    public WaitingList(boolean priority) {
+        this.priority = priority;
+        if (priority) {
+            arrivals = null;
+            byArrival = new ConcurrentSkipListMap<>();
+            byScore = new ConcurrentSkipListMap<>();
+        } else {
+            arrivals = new ConcurrentLinkedQueue<>();
+            byArrival = null;
+            byScore = null;
+        }
+    }
+
+    /*A waiting list with the same players in the same order. A copy of a saved list with the same ordering is just
+    as saved*/
+    public WaitingList(Collection<Player> players, boolean priority) {
+        this(priority);
+        addAll(players);
+        saved = players instanceof WaitingList && ((WaitingList) players).priority == priority
+                && !((WaitingList) players).isDirty();
+    }
+
+    public boolean isPriority() {
+        return priority;
+    }
+
+    /*True if players have been added or taken since the list was last saved or loaded (see SegmentedSnapshot)*/
+    public boolean isDirty() {
+        return !saved;
+    }
+
+    public void notDirty() {
+        saved = true;
+    }
+
+    @Override
+    public boolean offer(Player player) {
+        Objects.requireNonNull(player);
+        if (priority) {
+            Entry entry = new Entry(player, player.abilityScore(), nextArrival.getAndIncrement());
+            byArrival.put(entry.arrival, entry);
+            byScore.put(entry, entry);
+        } else {
+            arrivals.offer(player);
+        }
+        size.incrementAndGet();
+        saved = false;
+        return true;
+    }
+
+    /*The player who has waited longest, or null*/
+    @Override
+    public Player poll() {
+        if (!priority) {
+            Player player = arrivals.poll();
+            if (player != null) {
+                size.decrementAndGet();
+                saved = false;
+            }
+            return player;
+        }
+        Map.Entry<Long, Entry> first = byArrival.pollFirstEntry();
+        if (first == null) {
+            return null;
+        }
+        return taken(first.getValue());
+    }
+
+    /*The player whose ability score is closest to targetScore (the one who waited longer if two are as close), or
+    null. A first in, first out list ignores the target and acts like poll()*/
+    public Player poll(double targetScore) {
+        if (!priority) {
+            return poll();
+        }
+        while (true) {
+            Entry closest = closest(targetScore);
+            if (closest == null) {
+                return null;
+            }
+            if (byArrival.remove(closest.arrival, closest)) {
+                return taken(closest);
+            }
+            byScore.remove(closest);
+        }
+    }
+
+    /*The player poll(targetScore) would take, without taking them*/
+    public Player peek(double targetScore) {
+        if (!priority) {
+            return peek();
+        }
+        while (true) {
+            Entry closest = closest(targetScore);
+            if (closest == null) {
+                return null;
+            }
+            if (byArrival.get(closest.arrival) == closest) {
+                return closest.player;
+            }
+            byScore.remove(closest);
+        }
+    }
+
+    private Entry closest(double targetScore) {
+        Entry probe = new Entry(null, targetScore, Long.MIN_VALUE);
+        Entry below = firstArrival(byScore.lowerKey(probe));
+        Entry above = byScore.ceilingKey(probe);
+        if (below == null) {
+            return above;
+        } else if (above == null) {
+            return below;
+        }
+        double belowGap = targetScore - below.score;
+        double aboveGap = above.score - targetScore;
+        return belowGap < aboveGap || (belowGap == aboveGap && below.arrival < above.arrival) ? below : above;
+    }
+
+    /*Players below the target are found by lowerKey, which gives the last to arrive of those with the closest score;
+    this steps back to the first of them, so ties always go to whoever waited longest*/
+    private Entry firstArrival(Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        Entry first = byScore.ceilingKey(new Entry(null, entry.score, Long.MIN_VALUE));
+        return first == null ? entry : first;
+    }
+
+    private Player taken(Entry entry) {
+        byScore.remove(entry);
+        size.decrementAndGet();
+        saved = false;
+        return entry.player;
+    }
+
+    @Override
+    public Player peek() {
+        if (!priority) {
+            return arrivals.peek();
+        }
+        Map.Entry<Long, Entry> first = byArrival.firstEntry();
+        return first == null ? null : first.getValue().player;
+    }
+
+    /*Exact when nothing is being added or taken at the same time*/
+    @Override
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /*Goes through the players in the order they came in, without blocking anyone adding or taking players*/
+    @Override
+    public Iterator<Player> iterator() {
+        if (!priority) {
+            Iterator<Player> players = arrivals.iterator();
+            return new Iterator<Player>() {
+                @Override
+                public boolean hasNext() {
+                    return players.hasNext();
+                }
+
+                @Override
+                public Player next() {
+                    return players.next();
+                }
+
+                @Override
+                public void remove() {
+                    players.remove();
+                    size.decrementAndGet();
+                    saved = false;
+                }
+            };
+        }
+        Iterator<Entry> entries = byArrival.values().iterator();
+        return new Iterator<Player>() {
+            private Entry last;
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Player next() {
+                last = entries.next();
+                return last.player;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (byArrival.remove(last.arrival, last)) {
+                    taken(last);
+                }
+                last = null;
+            }
+        };
+    }
+}